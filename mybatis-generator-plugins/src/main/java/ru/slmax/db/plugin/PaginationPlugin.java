@@ -0,0 +1,79 @@
+package ru.slmax.db.plugin;
+
+import org.mybatis.generator.api.IntrospectedTable;
+import org.mybatis.generator.api.PluginAdapter;
+import org.mybatis.generator.api.dom.java.Field;
+import org.mybatis.generator.api.dom.java.FullyQualifiedJavaType;
+import org.mybatis.generator.api.dom.java.JavaVisibility;
+import org.mybatis.generator.api.dom.java.Method;
+import org.mybatis.generator.api.dom.java.Parameter;
+import org.mybatis.generator.api.dom.java.TopLevelClass;
+import org.mybatis.generator.api.dom.xml.Attribute;
+import org.mybatis.generator.api.dom.xml.TextElement;
+import org.mybatis.generator.api.dom.xml.XmlElement;
+
+import java.util.List;
+
+/**
+ * MyBatis Generator plugin that adds {@code limit} and {@code offset} to the generated example classes
+ * and appends them to {@code selectByExample}. Keyset pages combine {@code limit} with an
+ * {@code id > ?} criterion and {@code order by id}.
+ */
+public class PaginationPlugin extends PluginAdapter {
+
+    @Override
+    public boolean validate(List<String> warnings) {
+        return true;
+    }
+
+    @Override
+    public boolean modelExampleClassGenerated(TopLevelClass topLevelClass, IntrospectedTable introspectedTable) {
+        addProperty(topLevelClass, introspectedTable, "limit", new FullyQualifiedJavaType("java.lang.Integer"));
+        addProperty(topLevelClass, introspectedTable, "offset", new FullyQualifiedJavaType("java.lang.Long"));
+        for (Method method : topLevelClass.getMethods()) {
+            if ("clear".equals(method.getName())) {
+                method.addBodyLine("limit = null;");
+                method.addBodyLine("offset = null;");
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean sqlMapSelectByExampleWithoutBLOBsElementGenerated(XmlElement element, IntrospectedTable introspectedTable) {
+        element.addElement(ifNotNull("limit"));
+        element.addElement(ifNotNull("offset"));
+        return true;
+    }
+
+    private void addProperty(TopLevelClass topLevelClass, IntrospectedTable introspectedTable,
+                             String name, FullyQualifiedJavaType type) {
+        Field field = new Field(name, type);
+        field.setVisibility(JavaVisibility.PROTECTED);
+        context.getCommentGenerator().addFieldComment(field, introspectedTable);
+        topLevelClass.addField(field);
+
+        String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+
+        Method setter = new Method("set" + suffix);
+        setter.setVisibility(JavaVisibility.PUBLIC);
+        setter.addParameter(new Parameter(type, name));
+        setter.addBodyLine("this." + name + " = " + name + ";");
+        context.getCommentGenerator().addGeneralMethodComment(setter, introspectedTable);
+        topLevelClass.addMethod(setter);
+
+        Method getter = new Method("get" + suffix);
+        getter.setVisibility(JavaVisibility.PUBLIC);
+        getter.setReturnType(type);
+        getter.addBodyLine("return " + name + ";");
+        context.getCommentGenerator().addGeneralMethodComment(getter, introspectedTable);
+        topLevelClass.addMethod(getter);
+    }
+
+    private XmlElement ifNotNull(String name) {
+        XmlElement ifElement = new XmlElement("if");
+        ifElement.addAttribute(new Attribute("test", name + " != null"));
+        ifElement.addElement(new TextElement(name + " #{" + name + "}"));
+        return ifElement;
+    }
+}
@@ -0,0 +1,122 @@
+package ru.slmax.benchmarks;
+
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.openjdk.jmh.annotations.*;
+import ru.slmax.db.dao.CategoriesMapper;
+import ru.slmax.db.dao.ProductsMapper;
+import ru.slmax.db.model.Categories;
+import ru.slmax.db.model.Products;
+import ru.slmax.db.model.ProductsExample;
+import ru.slmax.utils.DbUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ProductsMapper} and {@link CategoriesMapper} operations on the in-memory H2 environment
+ * of mybatisConfig.xml (PostgreSQL mode), loaded from the same mapper XMLs as the tests.
+ * Like a test, each benchmark thread works through the thread-bound mappers on its own thread session,
+ * opened once per trial, so the operations are measured without a session open per call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DaoBenchmark {
+    private static final String ENVIRONMENT = "h2";
+    private static final int ROWS = 10000;
+
+    private ProductsMapper productsMapper;
+    private CategoriesMapper categoriesMapper;
+    private long firstId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        DbUtils.environment = ENVIRONMENT;
+        DbUtils.getThreadSession();
+        productsMapper = DbUtils.getProductMapper();
+        categoriesMapper = DbUtils.getCategoriesMapper();
+        DbUtils.truncateProducts(productsMapper);
+        List<Products> products = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            products.add(product(i));
+        }
+        DbUtils.insertProducts(products);
+        firstId = DbUtils.findUnusedProductId(productsMapper) - DbUtils.unusedIdGap - ROWS + 1;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DbUtils.closeThreadSession();
+    }
+
+    private static Products product(int i) {
+        Products product = new Products();
+        product.setTitle("Product " + i);
+        product.setPrice(100 + i % 900);
+        product.setCategory_id((long) (1 + i % 3));
+        return product;
+    }
+
+    private long randomId() {
+        return firstId + ThreadLocalRandom.current().nextInt(ROWS);
+    }
+
+    @Benchmark
+    public Products selectProductByPrimaryKey() {
+        return productsMapper.selectByPrimaryKey(randomId());
+    }
+
+    @Benchmark
+    public Categories selectCategoryByPrimaryKey() {
+        return categoriesMapper.selectByPrimaryKey(1 + ThreadLocalRandom.current().nextInt(3));
+    }
+
+    @Benchmark
+    public long countProducts() {
+        return productsMapper.countByExample(new ProductsExample());
+    }
+
+    @Benchmark
+    public List<Products> selectByExampleWithCriteria() {
+        int price = 100 + ThreadLocalRandom.current().nextInt(800);
+        ProductsExample example = new ProductsExample();
+        example.createCriteria()
+                .andPriceBetween(price, price + 10)
+                .andCategory_idEqualTo(1L);
+        example.setOrderByClause("id");
+        example.setLimit(50);
+        return productsMapper.selectByExample(example);
+    }
+
+    @Benchmark
+    public int insertAndDelete() {
+        Products product = product(ThreadLocalRandom.current().nextInt(ROWS));
+        productsMapper.insert(product);
+        return productsMapper.deleteByPrimaryKey(product.getId());
+    }
+
+    @Benchmark
+    public int updateByPrimaryKey() {
+        Products product = product(ThreadLocalRandom.current().nextInt(ROWS));
+        product.setId(randomId());
+        return productsMapper.updateByPrimaryKey(product);
+    }
+
+    /**
+     * What every mapper lookup used to cost: parsing the config and mapper XMLs and creating a new pool.
+     */
+    @Benchmark
+    public SqlSessionFactory buildSqlSessionFactory() {
+        return DbUtils.buildSqlSessionFactory(ENVIRONMENT);
+    }
+
+    @Benchmark
+    public SqlSessionFactory cachedSqlSessionFactory() {
+        return DbUtils.getSqlSessionFactory(ENVIRONMENT);
+    }
+}
@@ -0,0 +1,80 @@
+package ru.slmax.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.*;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+import ru.slmax.dto.Category;
+import ru.slmax.dto.Product;
+import ru.slmax.utils.RetrofitUtils;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization and deserialization of the DTOs through the converters {@link RetrofitUtils} registers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JacksonConverterBenchmark {
+    private static final MediaType JSON = MediaType.get("application/json");
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    private Converter<Product, RequestBody> productWriter;
+    private Converter<ResponseBody, Product> productReader;
+    private Converter<Category, RequestBody> categoryWriter;
+    private Converter<ResponseBody, Category> categoryReader;
+    private Product product;
+    private Category category;
+    private byte[] productJson;
+    private byte[] categoryJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        Retrofit retrofit = RetrofitUtils.getRetrofit("http://localhost/");
+        productWriter = retrofit.requestBodyConverter(Product.class, NO_ANNOTATIONS, NO_ANNOTATIONS);
+        productReader = retrofit.responseBodyConverter(Product.class, NO_ANNOTATIONS);
+        categoryWriter = retrofit.requestBodyConverter(Category.class, NO_ANNOTATIONS, NO_ANNOTATIONS);
+        categoryReader = retrofit.responseBodyConverter(Category.class, NO_ANNOTATIONS);
+
+        product = MarketApiStub.product(42);
+        category = MarketApiStub.category(1);
+
+        ObjectMapper mapper = new ObjectMapper();
+        productJson = mapper.writeValueAsBytes(product);
+        categoryJson = mapper.writeValueAsBytes(category);
+    }
+
+    @Benchmark
+    public Buffer writeProduct() throws IOException {
+        Buffer buffer = new Buffer();
+        productWriter.convert(product).writeTo(buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public Product readProduct() throws IOException {
+        return productReader.convert(ResponseBody.create(JSON, productJson));
+    }
+
+    @Benchmark
+    public Buffer writeCategory() throws IOException {
+        Buffer buffer = new Buffer();
+        categoryWriter.convert(category).writeTo(buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public Category readCategory() throws IOException {
+        return categoryReader.convert(ResponseBody.create(JSON, categoryJson));
+    }
+}
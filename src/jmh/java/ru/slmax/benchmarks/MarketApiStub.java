@@ -0,0 +1,177 @@
+package ru.slmax.benchmarks;
+
+import lombok.SneakyThrows;
+import okhttp3.MediaType;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import ru.slmax.dto.Category;
+import ru.slmax.dto.Product;
+import ru.slmax.enums.CategoryType;
+import ru.slmax.utils.WireFormat;
+
+import javax.net.ServerSocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Local stand-in for the market API: answers the {@code ProductService} routes with canned bodies,
+ * so benchmarks measure the client path and not the remote server. Bodies are JSON unless the
+ * {@code Accept} header prefers another {@link WireFormat}. GETs carry an ETag and answer 304 to a matching
+ * {@code If-None-Match}.
+ */
+public class MarketApiStub {
+    /** held strongly: java.util.logging keeps only weak references to loggers, and with them their level */
+    private static final Logger serverLogger = Logger.getLogger(MockWebServer.class.getName());
+
+    private final MockWebServer server = new MockWebServer();
+
+    public static Product product(int id) {
+        return new Product(id, "Product " + id, 100 + id % 900, CategoryType.values()[id % CategoryType.values().length].getTitle());
+    }
+
+    public static List<Product> products(int count) {
+        List<Product> products = new ArrayList<>(count);
+        for (int id = 1; id <= count; id++) {
+            products.add(product(id));
+        }
+        return products;
+    }
+
+    public static Category category(int id) {
+        Category category = new Category();
+        category.setId(id);
+        category.setTitle(CategoryType.values()[(id - 1) % CategoryType.values().length].getTitle());
+        category.setProducts(new ArrayList<>(products(20)));
+        return category;
+    }
+
+    @SneakyThrows
+    public MarketApiStub(int catalogSize) {
+        // MockWebServer logs every request at INFO, which would cost more than the calls measured
+        serverLogger.setLevel(Level.WARNING);
+        Map<WireFormat, byte[]> productBodies = encode(product(1));
+        Map<WireFormat, byte[]> catalogBodies = encode(products(catalogSize));
+        Map<WireFormat, byte[]> categoryBodies = encode(category(1));
+        server.setServerSocketFactory(new NoDelayServerSocketFactory());
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                WireFormat format = accepted(request.getHeader("Accept"));
+                switch (request.getMethod()) {
+                    case "GET":
+                        Map<WireFormat, byte[]> bodies = path.contains("/categories/") ? categoryBodies
+                                : path.endsWith("/products") ? catalogBodies : productBodies;
+                        String eTag = eTag(format, bodies);
+                        if (eTag.equals(request.getHeader("If-None-Match"))) {
+                            return new MockResponse().setResponseCode(304).setHeader("ETag", eTag);
+                        }
+                        return body(format, bodies, 200).setHeader("ETag", eTag);
+                    case "POST":
+                        return body(format, productBodies, 201);
+                    case "PUT":
+                        return body(format, productBodies, 200);
+                    case "DELETE":
+                        return new MockResponse().setResponseCode(200);
+                    default:
+                        return new MockResponse().setResponseCode(405);
+                }
+            }
+        });
+        server.start();
+    }
+
+    private static Map<WireFormat, byte[]> encode(Object value) throws IOException {
+        Map<WireFormat, byte[]> bodies = new EnumMap<>(WireFormat.class);
+        for (WireFormat format : WireFormat.values()) {
+            bodies.put(format, format.mapper().writeValueAsBytes(value));
+        }
+        return bodies;
+    }
+
+    /**
+     * The first media type of the header this stub can produce; the client lists its preference first.
+     */
+    private static WireFormat accepted(String accept) {
+        if (accept != null) {
+            for (String mediaType : accept.split(",")) {
+                MediaType parsed = MediaType.parse(mediaType.trim());
+                WireFormat format = WireFormat.of(parsed);
+                if (format != WireFormat.JSON || parsed != null && WireFormat.JSON.mediaType().subtype().equals(parsed.subtype())) {
+                    return format;
+                }
+            }
+        }
+        return WireFormat.JSON;
+    }
+
+    private static String eTag(WireFormat format, Map<WireFormat, byte[]> bodies) {
+        return "\"" + format + "-" + Integer.toHexString(Arrays.hashCode(bodies.get(format))) + "\"";
+    }
+
+    private static MockResponse body(WireFormat format, Map<WireFormat, byte[]> bodies, int code) {
+        return new MockResponse()
+                .setResponseCode(code)
+                .setHeader("Content-Type", format.mediaType().toString())
+                .setBody(new Buffer().write(bodies.get(format)));
+    }
+
+    public String baseUrl() {
+        return server.url("/market/api/v1/").toString();
+    }
+
+    @SneakyThrows
+    public void shutdown() {
+        server.shutdown();
+    }
+
+    /**
+     * Without TCP_NODELAY the separate header and body writes of MockWebServer meet delayed ACKs
+     * and every call stalls for about 40 ms.
+     */
+    private static class NoDelayServerSocketFactory extends ServerSocketFactory {
+        @Override
+        public ServerSocket createServerSocket() throws IOException {
+            return new NoDelayServerSocket();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog, InetAddress address) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class NoDelayServerSocket extends ServerSocket {
+        NoDelayServerSocket() throws IOException {
+        }
+
+        @Override
+        public Socket accept() throws IOException {
+            Socket socket = super.accept();
+            socket.setTcpNoDelay(true);
+            return socket;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ru.slmax.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import ru.slmax.dto.Product;
+import ru.slmax.utils.JsonUtils;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Product} round trips (write to bytes, read back) with a default {@link ObjectMapper}
+ * against the tuned shared one of {@link JsonUtils}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectMapperBenchmark {
+    private final ObjectMapper defaultMapper = new ObjectMapper();
+    private final ObjectReader defaultReader = defaultMapper.readerFor(Product.class);
+    private final ObjectWriter defaultWriter = defaultMapper.writerFor(Product.class);
+    private final Product product = MarketApiStub.product(42);
+
+    @Benchmark
+    public Product defaultMapperRoundTrip() throws IOException {
+        return defaultReader.readValue(defaultWriter.writeValueAsBytes(product));
+    }
+
+    @Benchmark
+    public Product sharedMapperRoundTrip() throws IOException {
+        return JsonUtils.productReader.readValue(JsonUtils.productWriter.writeValueAsBytes(product));
+    }
+}
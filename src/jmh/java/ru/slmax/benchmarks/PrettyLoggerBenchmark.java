@@ -0,0 +1,63 @@
+package ru.slmax.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.OkHttpClient;
+import org.openjdk.jmh.annotations.*;
+import ru.slmax.utils.PrettyLogger;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cost of {@link PrettyLogger#log} for JSON bodies and plain lines. The OkHttp platform logger is enabled
+ * but has no handlers, so the numbers are formatting cost without console I/O.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrettyLoggerBenchmark {
+    private final PrettyLogger prettyLogger = new PrettyLogger();
+    private String productJson;
+    private String catalogJson;
+
+    private final Logger platformLogger = Logger.getLogger(OkHttpClient.class.getName());
+
+    @Setup
+    public void setUp() throws IOException {
+        platformLogger.setUseParentHandlers(false);
+        platformLogger.setLevel(Level.INFO);
+        ObjectMapper mapper = new ObjectMapper();
+        productJson = mapper.writeValueAsString(MarketApiStub.product(1));
+        catalogJson = mapper.writeValueAsString(MarketApiStub.products(100));
+    }
+
+    @Benchmark
+    public void logPlainLine() {
+        prettyLogger.log("--> GET http://localhost/market/api/v1/products/1");
+    }
+
+    @Benchmark
+    public void logProduct() {
+        prettyLogger.log(productJson);
+    }
+
+    @Benchmark
+    public void logCatalog() {
+        prettyLogger.log(catalogJson);
+    }
+
+    @Benchmark
+    public void logCatalogWithInfoOff() {
+        platformLogger.setLevel(Level.WARNING);
+        try {
+            prettyLogger.log(catalogJson);
+        } finally {
+            platformLogger.setLevel(Level.INFO);
+        }
+    }
+}
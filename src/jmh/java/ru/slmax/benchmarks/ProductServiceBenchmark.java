@@ -0,0 +1,73 @@
+package ru.slmax.benchmarks;
+
+import okhttp3.OkHttpClient;
+import okhttp3.ResponseBody;
+import okhttp3.logging.HttpLoggingInterceptor;
+import org.openjdk.jmh.annotations.*;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import ru.slmax.dto.Product;
+import ru.slmax.service.ProductService;
+import ru.slmax.utils.RetrofitUtils;
+import ru.slmax.utils.WireFormatConverterFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@link ProductService} calls against {@link MarketApiStub} through the client of {@link RetrofitUtils},
+ * with its interceptors, pool and dispatcher but without its logging interceptor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductServiceBenchmark {
+    private MarketApiStub stub;
+    private ProductService productService;
+    private Product product;
+
+    @Setup
+    public void setUp() {
+        stub = new MarketApiStub(100);
+        OkHttpClient.Builder client = RetrofitUtils.getClient().newBuilder();
+        client.interceptors().removeIf(interceptor -> interceptor instanceof HttpLoggingInterceptor);
+        productService = new Retrofit.Builder()
+                .client(client.build())
+                .baseUrl(stub.baseUrl())
+                .addConverterFactory(new WireFormatConverterFactory(RetrofitUtils.getWireFormat()))
+                .build()
+                .create(ProductService.class);
+        product = MarketApiStub.product(1).withId(null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        stub.shutdown();
+    }
+
+    @Benchmark
+    public Response<Product> getProduct() throws IOException {
+        return productService.getProduct(1).execute();
+    }
+
+    @Benchmark
+    public Response<ArrayList<Product>> getProducts() throws IOException {
+        return productService.getProducts().execute();
+    }
+
+    @Benchmark
+    public Response<Product> createProduct() throws IOException {
+        return productService.createProduct(product).execute();
+    }
+
+    @Benchmark
+    public Response<ResponseBody> deleteProduct() throws IOException {
+        Response<ResponseBody> response = productService.deleteProduct(1).execute();
+        response.body().close();
+        return response;
+    }
+}
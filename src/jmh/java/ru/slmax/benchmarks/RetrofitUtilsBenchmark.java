@@ -0,0 +1,43 @@
+package ru.slmax.benchmarks;
+
+import okhttp3.OkHttpClient;
+import org.openjdk.jmh.annotations.*;
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+import ru.slmax.service.ProductService;
+import ru.slmax.utils.RetrofitUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of getting a {@link ProductService}: the cached {@link RetrofitUtils#getRetrofit()} against
+ * building a new client and Retrofit on every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RetrofitUtilsBenchmark {
+
+    @Benchmark
+    public Retrofit cachedRetrofit() {
+        return RetrofitUtils.getRetrofit();
+    }
+
+    @Benchmark
+    public ProductService cachedRetrofitService() {
+        return RetrofitUtils.getRetrofit().create(ProductService.class);
+    }
+
+    @Benchmark
+    public Retrofit newRetrofitPerCall() {
+        OkHttpClient client = new OkHttpClient.Builder().build();
+        return new Retrofit.Builder()
+                .client(client)
+                .baseUrl(RetrofitUtils.getBaseUrl())
+                .addConverterFactory(JacksonConverterFactory.create())
+                .build();
+    }
+}
@@ -0,0 +1,104 @@
+package ru.slmax.benchmarks;
+
+import okhttp3.OkHttpClient;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.*;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+import ru.slmax.dto.Product;
+import ru.slmax.service.ProductService;
+import ru.slmax.utils.WireFormat;
+import ru.slmax.utils.WireFormatConverterFactory;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON against Smile and CBOR: converting a {@link Product} and a whole catalog, and fetching the
+ * catalog from {@link MarketApiStub}, which answers in the format the client asks for.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    @Param({"JSON", "SMILE", "CBOR"})
+    public WireFormat format;
+
+    @Param({"1000"})
+    public int catalogSize;
+
+    private MarketApiStub stub;
+    private ProductService productService;
+    private Converter<Product, RequestBody> productWriter;
+    private Converter<ResponseBody, Product> productReader;
+    private Converter<ResponseBody, ArrayList<Product>> catalogReader;
+    private Product product;
+    private byte[] productBody;
+    private byte[] catalogBody;
+
+    @Setup
+    public void setUp() throws Exception {
+        stub = new MarketApiStub(catalogSize);
+        String accept = format.accept();
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(chain -> chain.proceed(chain.request().newBuilder().header("Accept", accept).build()))
+                .build();
+        Retrofit retrofit = new Retrofit.Builder()
+                .client(client)
+                .baseUrl(stub.baseUrl())
+                .addConverterFactory(new WireFormatConverterFactory(format))
+                .build();
+        productService = retrofit.create(ProductService.class);
+
+        Method getProducts = ProductService.class.getMethod("getProducts");
+        Type catalogType = ((ParameterizedType) getProducts.getGenericReturnType()).getActualTypeArguments()[0];
+        productWriter = retrofit.requestBodyConverter(Product.class, NO_ANNOTATIONS, NO_ANNOTATIONS);
+        productReader = retrofit.responseBodyConverter(Product.class, NO_ANNOTATIONS);
+        catalogReader = retrofit.<ArrayList<Product>>responseBodyConverter(catalogType, NO_ANNOTATIONS);
+
+        product = MarketApiStub.product(42);
+        productBody = format.mapper().writeValueAsBytes(product);
+        catalogBody = format.mapper().writeValueAsBytes(MarketApiStub.products(catalogSize));
+    }
+
+    @TearDown
+    public void tearDown() {
+        stub.shutdown();
+    }
+
+    @Benchmark
+    public Buffer writeProduct() throws IOException {
+        Buffer buffer = new Buffer();
+        productWriter.convert(product).writeTo(buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public Product readProduct() throws IOException {
+        return productReader.convert(ResponseBody.create(format.mediaType(), productBody));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public ArrayList<Product> readCatalog() throws IOException {
+        return catalogReader.convert(ResponseBody.create(format.mediaType(), catalogBody));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public ArrayList<Product> getCatalog() throws IOException {
+        return productService.getProducts().execute().body();
+    }
+}
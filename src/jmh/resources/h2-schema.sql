@@ -0,0 +1,13 @@
+create table if not exists categories (
+    id serial primary key,
+    title varchar(255) not null unique
+);
+
+create table if not exists products (
+    id bigserial primary key,
+    title varchar(255),
+    price int,
+    category_id bigint references categories (id)
+);
+
+merge into categories (id, title) key (id) values (1, 'Food'), (2, 'Electronics'), (3, 'Furniture');
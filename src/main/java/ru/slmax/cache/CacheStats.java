@@ -0,0 +1,29 @@
+package ru.slmax.cache;
+
+import lombok.Value;
+
+/**
+ * Counters of a cache at one point in time.
+ */
+@Value
+public class CacheStats {
+    String name;
+    long hits;
+    long misses;
+    long revalidations;
+    long evictions;
+    long invalidations;
+    long entries;
+    long bytes;
+
+    public double getHitRatio() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d entries, %d bytes, hits %d, misses %d (hit ratio %.1f%%), revalidated %d, evicted %d, invalidated %d",
+                name, entries, bytes, hits, misses, getHitRatio() * 100, revalidations, evictions, invalidations);
+    }
+}
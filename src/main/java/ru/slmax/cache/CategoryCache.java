@@ -0,0 +1,196 @@
+package ru.slmax.cache;
+
+import ru.slmax.db.dao.CategoriesMapper;
+import ru.slmax.db.model.Categories;
+import ru.slmax.db.model.CategoriesExample;
+import ru.slmax.enums.CategoryType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-through cache of the {@code categories} table. The whole table is loaded with one query and kept
+ * as an immutable snapshot indexed by id and by title; the snapshot is reloaded when it is older than
+ * the TTL or on {@link #refresh()}. A lookup that misses the snapshot reads the single row from the
+ * database and adds it, so categories created after the load are found too. An id or title the database
+ * does not have is remembered as absent until the next load: refresh after creating a category that
+ * was looked up before.
+ * Returned rows are shared: do not modify them.
+ */
+public class CategoryCache {
+    private final CategoriesMapper categoriesMapper;
+    private final long ttlNanos;
+    private volatile Snapshot snapshot;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    public CategoryCache(CategoriesMapper categoriesMapper, long ttl, TimeUnit unit) {
+        this.categoriesMapper = categoriesMapper;
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    /**
+     * The category with the id, or null if there is none.
+     */
+    public Categories byId(Integer id) {
+        Snapshot current = current();
+        Categories category = current.byId.get(id);
+        if (category != null || current.absentIds.contains(id)) {
+            hits.increment();
+            return category;
+        }
+        misses.increment();
+        category = categoriesMapper.selectByPrimaryKey(id);
+        if (category == null) {
+            current.absentIds.add(id);
+        }
+        return add(category);
+    }
+
+    /**
+     * The category with the title, or null if there is none.
+     */
+    public Categories byTitle(String title) {
+        Snapshot current = current();
+        Categories category = current.byTitle.get(title);
+        if (category != null || current.absentTitles.contains(title)) {
+            hits.increment();
+            return category;
+        }
+        misses.increment();
+        CategoriesExample example = new CategoriesExample();
+        example.createCriteria().andTitleEqualTo(title);
+        List<Categories> found = categoriesMapper.selectByExample(example);
+        if (found.isEmpty()) {
+            current.absentTitles.add(title);
+            return null;
+        }
+        return add(found.get(0));
+    }
+
+    /**
+     * The row of the enum constant, looked up by title: the title is what the API exposes.
+     *
+     * @throws IllegalStateException if the table has no such category
+     */
+    public Categories of(CategoryType type) {
+        Categories category = byTitle(type.getTitle());
+        if (category == null) {
+            throw new IllegalStateException("No category titled " + type.getTitle() + " for " + type);
+        }
+        return category;
+    }
+
+    public Collection<Categories> all() {
+        return current().byId.values();
+    }
+
+    /**
+     * Reloads the table now.
+     */
+    public void refresh() {
+        refreshes.increment();
+        load();
+    }
+
+    /**
+     * Checks that every {@link CategoryType} exists in the table with the same id and title.
+     *
+     * @throws IllegalStateException listing every mismatch
+     */
+    public void validate() {
+        Snapshot current = current();
+        List<String> mismatches = new ArrayList<>();
+        for (CategoryType type : CategoryType.values()) {
+            Categories byId = current.byId.get(type.getId());
+            if (byId == null) {
+                mismatches.add(type + ": no category with id " + type.getId());
+            } else if (!Objects.equals(byId.getTitle(), type.getTitle())) {
+                mismatches.add(type + ": category " + type.getId() + " is titled " + byId.getTitle() + ", not " + type.getTitle());
+            }
+        }
+        if (!mismatches.isEmpty()) {
+            throw new IllegalStateException("CategoryType does not match the categories table: " + String.join("; ", mismatches));
+        }
+    }
+
+    public CategoryCacheStats stats() {
+        Snapshot current = snapshot;
+        return new CategoryCacheStats(hits.sum(), misses.sum(), loads.sum(), refreshes.sum(),
+                current == null ? 0 : current.byId.size(),
+                current == null ? 0 : current.absentIds.size() + current.absentTitles.size());
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null || System.nanoTime() - current.loadedAtNanos >= ttlNanos) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null || System.nanoTime() - current.loadedAtNanos >= ttlNanos) {
+                    current = load();
+                }
+            }
+        }
+        return current;
+    }
+
+    private synchronized Snapshot load() {
+        loads.increment();
+        snapshot = new Snapshot(categoriesMapper.selectByExample(new CategoriesExample()), System.nanoTime());
+        return snapshot;
+    }
+
+    private synchronized Categories add(Categories category) {
+        if (category != null) {
+            List<Categories> categories = new ArrayList<>(snapshot.byId.values());
+            categories.add(category);
+            snapshot = new Snapshot(categories, snapshot);
+        }
+        return category;
+    }
+
+    private static class Snapshot {
+        final Map<Integer, Categories> byId;
+        final Map<String, Categories> byTitle;
+        final Set<Integer> absentIds;
+        final Set<String> absentTitles;
+        final long loadedAtNanos;
+
+        Snapshot(Collection<Categories> categories, long loadedAtNanos) {
+            this(categories, loadedAtNanos, ConcurrentHashMap.newKeySet(), ConcurrentHashMap.newKeySet());
+        }
+
+        /**
+         * The previous snapshot with rows added: same load time, same known absences.
+         */
+        Snapshot(Collection<Categories> categories, Snapshot previous) {
+            this(categories, previous.loadedAtNanos, previous.absentIds, previous.absentTitles);
+        }
+
+        private Snapshot(Collection<Categories> categories, long loadedAtNanos, Set<Integer> absentIds, Set<String> absentTitles) {
+            Map<Integer, Categories> byId = new HashMap<>(categories.size() * 2);
+            Map<String, Categories> byTitle = new HashMap<>(categories.size() * 2);
+            for (Categories category : categories) {
+                byId.put(category.getId(), category);
+                byTitle.put(category.getTitle(), category);
+            }
+            this.byId = Collections.unmodifiableMap(byId);
+            this.byTitle = Collections.unmodifiableMap(byTitle);
+            this.absentIds = absentIds;
+            this.absentTitles = absentTitles;
+            this.loadedAtNanos = loadedAtNanos;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package ru.slmax.cache;
+
+import lombok.Value;
+
+/**
+ * Counters of a {@link CategoryCache} at one point in time.
+ */
+@Value
+public class CategoryCacheStats {
+    /** lookups answered by the snapshot, known absences included */
+    long hits;
+    /** lookups that read the database */
+    long misses;
+    /** loads of the whole table: the first one, on expiry and on refresh */
+    long loads;
+    /** loads requested with {@link CategoryCache#refresh()} */
+    long refreshes;
+    long entries;
+    /** ids and titles known to be absent until the next load */
+    long absent;
+
+    public double getHitRatio() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("categories: %d entries, %d known absent, hits %d, misses %d (hit ratio %.1f%%), loads %d, refreshes %d",
+                entries, absent, hits, misses, getHitRatio() * 100, loads, refreshes);
+    }
+}
@@ -0,0 +1,144 @@
+package ru.slmax.cache;
+
+import lombok.Value;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * In-memory LRU of response bodies keyed by URL and {@code Accept} (see {@link ResponseCacheInterceptor}),
+ * bounded by entry count and by total body bytes.
+ * Entries are fresh for {@code ttl} after they were stored or last revalidated; stale entries
+ * with an ETag are revalidated by {@link ResponseCacheInterceptor} instead of fetched again.
+ * Every invalidation moves the {@link #generation()} on; a response fetched across one is not stored.
+ */
+public class ResponseCache {
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private volatile long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public ResponseCache(long ttl, TimeUnit unit, int maxEntries, long maxBytes) {
+        this.ttlNanos = unit.toNanos(ttl);
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * The entry of the URL, fresh or stale, or null.
+     */
+    public synchronized Entry get(String url) {
+        return entries.get(url);
+    }
+
+    public boolean isFresh(Entry entry) {
+        return System.nanoTime() - entry.storedAtNanos < ttlNanos;
+    }
+
+    /**
+     * Read before the request goes out, and passed to {@link #put} with its response.
+     */
+    public long generation() {
+        return generation;
+    }
+
+    /**
+     * Stores the response unless an invalidation happened since {@code generation} was read:
+     * it may have been fetched before the write that invalidated its URL.
+     */
+    public boolean put(String url, long generation, int code, String message, Headers headers, MediaType contentType, byte[] body) {
+        String eTag = headers.get("ETag");
+        Entry entry = new Entry(code, message, headers, contentType, body, eTag, System.nanoTime());
+        synchronized (this) {
+            if (generation != this.generation) {
+                return false;
+            }
+            Entry previous = entries.put(url, entry);
+            if (previous != null) {
+                bytes -= previous.body.length;
+            }
+            bytes += body.length;
+            evict();
+            return true;
+        }
+    }
+
+    /**
+     * Marks the entry as just validated by the server: it is fresh for another TTL.
+     */
+    public synchronized Entry refresh(String url, Entry entry) {
+        Entry refreshed = new Entry(entry.code, entry.message, entry.headers, entry.contentType, entry.body, entry.eTag, System.nanoTime());
+        if (entries.get(url) == entry) {
+            entries.put(url, refreshed);
+        }
+        revalidations.increment();
+        return refreshed;
+    }
+
+    /**
+     * Drops every entry whose URL matches.
+     */
+    public synchronized void invalidate(Predicate<String> urls) {
+        generation++;
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> next = iterator.next();
+            if (urls.test(next.getKey())) {
+                bytes -= next.getValue().body.length;
+                iterator.remove();
+                invalidations.increment();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        invalidate(url -> true);
+    }
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    public synchronized CacheStats stats() {
+        return new CacheStats("http", hits.sum(), misses.sum(), revalidations.sum(), evictions.sum(), invalidations.sum(),
+                entries.size(), bytes);
+    }
+
+    private void evict() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()) {
+            bytes -= eldest.next().body.length;
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    @Value
+    public static class Entry {
+        int code;
+        String message;
+        Headers headers;
+        MediaType contentType;
+        byte[] body;
+        String eTag;
+        long storedAtNanos;
+    }
+}
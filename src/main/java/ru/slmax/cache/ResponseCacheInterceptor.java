@@ -0,0 +1,155 @@
+package ru.slmax.cache;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import retrofit2.Invocation;
+import retrofit2.http.Streaming;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Application interceptor in front of {@link ResponseCache}. Fresh entries answer GETs without
+ * touching the network; stale ones are revalidated with {@code If-None-Match} when they carry an ETag.
+ * <p>
+ * Any other method invalidates the collection it targets: {@code PUT products} and
+ * {@code DELETE products/5} both drop {@code products} and every {@code products/{id}},
+ * together with the collections registered as embedding it (categories list their products).
+ * {@code @Streaming} calls, conditional requests and {@code Cache-Control: no-cache} bypass the cache.
+ * Entries are keyed by URL and {@code Accept}, so responses in different wire formats never mix.
+ * A GET still in flight when a write invalidates the cache does not store its response.
+ */
+public class ResponseCacheInterceptor implements Interceptor {
+    private final ResponseCache cache;
+    private final long maxEntryBytes;
+    private final Map<String, List<String>> dependents;
+
+    /**
+     * @param dependents per collection name, the collections whose responses embed its resources
+     */
+    public ResponseCacheInterceptor(ResponseCache cache, long maxEntryBytes, Map<String, List<String>> dependents) {
+        this.cache = cache;
+        this.maxEntryBytes = maxEntryBytes;
+        this.dependents = dependents;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!"GET".equals(request.method())) {
+            try {
+                return chain.proceed(request);
+            } finally {
+                // also when the call fails: the server may have applied the change anyway
+                invalidate(request.url());
+            }
+        }
+        if (bypasses(request)) {
+            return chain.proceed(request);
+        }
+
+        String key = key(request);
+        long generation = cache.generation();
+        ResponseCache.Entry entry = cache.get(key);
+        if (entry != null && cache.isFresh(entry)) {
+            cache.recordHit();
+            return fromCache(request, entry);
+        }
+        if (entry != null && entry.getETag() != null) {
+            Response response = chain.proceed(request.newBuilder().header("If-None-Match", entry.getETag()).build());
+            if (response.code() == 304) {
+                response.close();
+                cache.recordHit();
+                return fromCache(request, cache.refresh(key, entry));
+            }
+            cache.recordMiss();
+            return store(key, generation, response);
+        }
+        cache.recordMiss();
+        return store(key, generation, chain.proceed(request));
+    }
+
+    private static String key(Request request) {
+        String accept = request.header("Accept");
+        return accept == null ? request.url().toString() : request.url() + " " + accept;
+    }
+
+    private boolean bypasses(Request request) {
+        Invocation invocation = request.tag(Invocation.class);
+        if (invocation != null && invocation.method().isAnnotationPresent(Streaming.class)) {
+            return true;
+        }
+        String cacheControl = request.header("Cache-Control");
+        return request.header("If-None-Match") != null
+                || cacheControl != null && (cacheControl.contains("no-cache") || cacheControl.contains("no-store"));
+    }
+
+    /**
+     * Keeps 200 responses up to {@code maxEntryBytes}; the returned response still reads the full body.
+     */
+    private Response store(String key, long generation, Response response) throws IOException {
+        ResponseBody body = response.body();
+        if (response.code() != 200 || body == null || body.contentLength() > maxEntryBytes) {
+            return response;
+        }
+        ResponseBody peeked = response.peekBody(maxEntryBytes + 1);
+        if (peeked.contentLength() <= maxEntryBytes) {
+            cache.put(key, generation, response.code(), response.message(), response.headers(), body.contentType(), peeked.bytes());
+        }
+        return response;
+    }
+
+    private Response fromCache(Request request, ResponseCache.Entry entry) {
+        long now = System.currentTimeMillis();
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(entry.getCode())
+                .message(entry.getMessage())
+                .headers(entry.getHeaders())
+                .body(ResponseBody.create(entry.getContentType(), entry.getBody()))
+                .sentRequestAtMillis(now)
+                .receivedResponseAtMillis(now)
+                .build();
+    }
+
+    private void invalidate(HttpUrl url) {
+        List<String> segments = url.pathSegments();
+        int collection = segments.size() - 1;
+        while (collection > 0 && isId(segments.get(collection))) {
+            collection--;
+        }
+        HttpUrl.Builder builder = url.newBuilder().query(null).fragment(null);
+        for (int i = segments.size() - 1; i > collection; i--) {
+            builder.removePathSegment(i);
+        }
+        invalidatePrefix(builder.build().toString());
+        for (String dependent : dependents.getOrDefault(segments.get(collection), Collections.emptyList())) {
+            invalidatePrefix(builder.setPathSegment(collection, dependent).build().toString());
+        }
+    }
+
+    private void invalidatePrefix(String collection) {
+        // keys are a URL, optionally followed by a space and the Accept header
+        cache.invalidate(key -> key.equals(collection) || key.startsWith(collection + " ")
+                || key.startsWith(collection + "/") || key.startsWith(collection + "?"));
+    }
+
+    private static boolean isId(String segment) {
+        if (segment.isEmpty()) {
+            return true;
+        }
+        for (int i = 0; i < segment.length(); i++) {
+            if (!Character.isDigit(segment.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,166 @@
+package ru.slmax.db.cache;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import ru.slmax.cache.CacheStats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU second-level cache of a mapper namespace, declared with {@code <cache type="...MapperCache">}.
+ * MyBatis flushes it when a statement of the same namespace writes, once the session commits.
+ * Rows changed by someone else, the API under test in particular, are not seen by MyBatis:
+ * entries expire after {@code ttlMs}, and {@link #clearAll()} drops every entry at once.
+ * MyBatis puts a result only when its session commits, after the query that missed; a result is not stored
+ * when the cache was cleared in between, since the query may have read the rows before the change.
+ * <p>
+ * MyBatis does not copy the results of custom caches, so cached rows are shared: do not modify them.
+ */
+public class MapperCache implements Cache {
+    private static final AtomicLong epoch = new AtomicLong();
+    /** per environment, the latest cache of each namespace: a factory built again replaces its caches */
+    private static final Map<String, Map<String, MapperCache>> caches = new ConcurrentHashMap<>();
+
+    private final String id;
+    private int size = 10000;
+    private long ttlNanos = Long.MAX_VALUE;
+    private long seenEpoch = epoch.get();
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /** keys missed since the last clear, whose results may still be put */
+    private final Set<Object> missed = new HashSet<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder clears = new LongAdder();
+
+    public MapperCache(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Drops the entries of every {@link MapperCache} of every environment.
+     */
+    public static void clearAll() {
+        epoch.incrementAndGet();
+    }
+
+    /**
+     * Statistics of the caches of the environment, one per namespace.
+     */
+    public static List<CacheStats> stats(String environment) {
+        List<CacheStats> stats = new ArrayList<>();
+        for (MapperCache cache : caches.getOrDefault(environment, Collections.emptyMap()).values()) {
+            stats.add(cache.stats());
+        }
+        return stats;
+    }
+
+    public void setSize(int size) {
+        if (size <= 0) {
+            throw new CacheException("Cache size must be positive: " + size);
+        }
+        this.size = size;
+    }
+
+    public void setTtlMs(long ttlMs) {
+        this.ttlNanos = ttlMs <= 0 ? Long.MAX_VALUE : ttlMs * 1_000_000L;
+    }
+
+    /**
+     * Registers the cache for {@link #stats(String)}; set from the {@code environment} variable of the configuration.
+     */
+    public void setEnvironment(String environment) {
+        caches.computeIfAbsent(environment, env -> new ConcurrentSkipListMap<>()).put(id, this);
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public synchronized void putObject(Object key, Object value) {
+        checkEpoch();
+        if (!missed.remove(key)) {
+            return;
+        }
+        entries.put(key, new Entry(value, System.nanoTime()));
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > size) {
+            eldest.next();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    @Override
+    public synchronized Object getObject(Object key) {
+        checkEpoch();
+        Entry entry = entries.get(key);
+        if (entry != null && System.nanoTime() - entry.storedAtNanos >= ttlNanos) {
+            entries.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            missed.add(key);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    @Override
+    public synchronized Object removeObject(Object key) {
+        // called for the missed keys of a session that rolls back
+        missed.remove(key);
+        Entry removed = entries.remove(key);
+        return removed == null ? null : removed.value;
+    }
+
+    @Override
+    public synchronized void clear() {
+        entries.clear();
+        missed.clear();
+        clears.increment();
+    }
+
+    @Override
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public synchronized CacheStats stats() {
+        return new CacheStats(id, hits.sum(), misses.sum(), 0, evictions.sum(), clears.sum(), entries.size(), 0);
+    }
+
+    private void checkEpoch() {
+        long current = epoch.get();
+        if (seenEpoch != current) {
+            seenEpoch = current;
+            clear();
+        }
+    }
+
+    private static class Entry {
+        final Object value;
+        final long storedAtNanos;
+
+        Entry(Object value, long storedAtNanos) {
+            this.value = value;
+            this.storedAtNanos = storedAtNanos;
+        }
+    }
+}
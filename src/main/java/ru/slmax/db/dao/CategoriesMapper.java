@@ -93,4 +93,6 @@ public interface CategoriesMapper {
      * @mbg.generated Sun Oct 24 20:35:19 MSK 2021
      */
     int updateByPrimaryKey(Categories record);
+
+    boolean existsByTitle(@Param("title") String title);
 }
\ No newline at end of file
@@ -1,7 +1,9 @@
 package ru.slmax.db.dao;
 
+import java.util.Collection;
 import java.util.List;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
 import ru.slmax.db.model.Products;
 import ru.slmax.db.model.ProductsExample;
 
@@ -93,4 +95,34 @@ public interface ProductsMapper {
      * @mbg.generated Sun Oct 24 20:35:20 MSK 2021
      */
     int updateByPrimaryKey(Products record);
+
+    /**
+     * Inserts all records with one multi-row {@code VALUES} statement.
+     */
+    int insertBatch(@Param("records") List<Products> records);
+
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Deletes at most {@code limit} products matching the optional title pattern and id range.
+     */
+    int deleteChunk(@Param("titlePattern") String titlePattern, @Param("fromId") Long fromId,
+                    @Param("toId") Long toId, @Param("limit") int limit);
+
+    void truncate();
+
+    /**
+     * Same query as {@link #selectByExample}, but rows are fetched from the database while the cursor is iterated.
+     */
+    Cursor<Products> selectByExampleWithCursor(ProductsExample example);
+
+    /**
+     * All product ids, fetched from the database while the cursor is iterated.
+     */
+    Cursor<Long> selectIdsWithCursor();
+
+    /**
+     * Returns {@code max(id) + gap}: an id no product has, found through the primary key index.
+     */
+    long selectUnusedId(@Param("gap") long gap);
 }
\ No newline at end of file
@@ -28,6 +28,22 @@ public class CategoriesExample {
      */
     protected List<Criteria> oredCriteria;
 
+    /**
+     * This field was generated by MyBatis Generator.
+     * This field corresponds to the database table categories
+     *
+     * @mbg.generated Sun Oct 18 02:49:15 MSK 2026
+     */
+    protected Integer limit;
+
+    /**
+     * This field was generated by MyBatis Generator.
+     * This field corresponds to the database table categories
+     *
+     * @mbg.generated Sun Oct 18 02:49:15 MSK 2026
+     */
+    protected Long offset;
+
     /**
      * This method was generated by MyBatis Generator.
      * This method corresponds to the database table categories
@@ -145,6 +161,48 @@ public class CategoriesExample {
         oredCriteria.clear();
         orderByClause = null;
         distinct = false;
+        limit = null;
+        offset = null;
+    }
+
+    /**
+     * This method was generated by MyBatis Generator.
+     * This method corresponds to the database table categories
+     *
+     * @mbg.generated Sun Oct 18 02:49:15 MSK 2026
+     */
+    public void setLimit(Integer limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * This method was generated by MyBatis Generator.
+     * This method corresponds to the database table categories
+     *
+     * @mbg.generated Sun Oct 18 02:49:15 MSK 2026
+     */
+    public Integer getLimit() {
+        return limit;
+    }
+
+    /**
+     * This method was generated by MyBatis Generator.
+     * This method corresponds to the database table categories
+     *
+     * @mbg.generated Sun Oct 18 02:49:15 MSK 2026
+     */
+    public void setOffset(Long offset) {
+        this.offset = offset;
+    }
+
+    /**
+     * This method was generated by MyBatis Generator.
+     * This method corresponds to the database table categories
+     *
+     * @mbg.generated Sun Oct 18 02:49:15 MSK 2026
+     */
+    public Long getOffset() {
+        return offset;
     }
 
     /**
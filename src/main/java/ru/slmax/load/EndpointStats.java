@@ -0,0 +1,40 @@
+package ru.slmax.load;
+
+import org.HdrHistogram.Histogram;
+import ru.slmax.metrics.LatencyRecorder;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and outcome counters of one endpoint. Recording is wait-free, so any number of
+ * scenario threads can write while a report is taken.
+ */
+public class EndpointStats {
+    private final LatencyRecorder latency = new LatencyRecorder();
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    public void record(long latencyNanos, boolean success) {
+        latency.record(latencyNanos);
+        if (success) {
+            successes.increment();
+        } else {
+            errors.increment();
+        }
+    }
+
+    /**
+     * Everything recorded so far. Safe to call while recording continues.
+     */
+    public Histogram histogram() {
+        return latency.snapshot();
+    }
+
+    public long getSuccesses() {
+        return successes.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+}
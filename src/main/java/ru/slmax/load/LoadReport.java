@@ -0,0 +1,51 @@
+package ru.slmax.load;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+
+import static ru.slmax.metrics.LatencyRecorder.millis;
+
+/**
+ * Per-endpoint throughput, error rate and latency percentiles of a finished run.
+ */
+public class LoadReport {
+    private final LoadStats stats;
+    private final long elapsedNanos;
+
+    public LoadReport(LoadStats stats, long elapsedNanos) {
+        this.stats = stats;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public LoadStats getStats() {
+        return stats;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        double seconds = elapsedNanos / 1e9;
+        StringBuilder report = new StringBuilder(String.format("Run took %.1f s%n", seconds));
+        report.append(String.format("%-22s %9s %8s %7s %9s %9s %9s %9s %9s %9s%n",
+                "endpoint", "count", "errors", "err%", "rps", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (Map.Entry<String, EndpointStats> entry : stats.getEndpoints().entrySet()) {
+            EndpointStats endpoint = entry.getValue();
+            Histogram histogram = endpoint.histogram();
+            long count = endpoint.getSuccesses() + endpoint.getErrors();
+            report.append(String.format("%-22s %9d %8d %6.2f%% %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    entry.getKey(), count, endpoint.getErrors(),
+                    count == 0 ? 0 : 100.0 * endpoint.getErrors() / count,
+                    count / seconds,
+                    millis(histogram.getValueAtPercentile(50)),
+                    millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue())));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,95 @@
+package ru.slmax.load;
+
+import ru.slmax.service.CategoryService;
+import ru.slmax.service.ProductService;
+import ru.slmax.utils.ConfigUtils;
+import ru.slmax.utils.ExecutorUtils;
+import ru.slmax.utils.RetrofitUtils;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays {@link ProductScenario} against the market API.
+ * <ul>
+ *     <li>{@link Model#OPEN}: scenarios start at a fixed rate regardless of how long earlier ones take;
+ *     at most {@code concurrency} run at once on platform threads, unbounded on virtual threads.</li>
+ *     <li>{@link Model#CLOSED}: {@code concurrency} workers each start a new scenario as soon as the previous one ends.</li>
+ * </ul>
+ * HTTP logging is asynchronous unless {@code http.logging.async=false} is given.
+ * Run from the command line, e.g.
+ * {@code mvn compile exec:java -Dexec.mainClass=ru.slmax.load.LoadRunner -Dload.model=OPEN -Dload.rps=200 -Dhttp.logging.level=NONE}.
+ */
+public class LoadRunner {
+
+    public enum Model { OPEN, CLOSED }
+
+    private final ProductService productService;
+    private final CategoryService categoryService;
+
+    public LoadRunner(ProductService productService, CategoryService categoryService) {
+        this.productService = productService;
+        this.categoryService = categoryService;
+    }
+
+    public LoadReport runOpen(double scenariosPerSecond, int concurrency, Duration duration) throws InterruptedException {
+        LoadStats stats = new LoadStats();
+        ProductScenario scenario = new ProductScenario(productService, categoryService, stats);
+        ExecutorService executor = ExecutorUtils.newScenarioExecutor(concurrency);
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / scenariosPerSecond);
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        for (long next = start; next < end; next += interval) {
+            long delay = next - System.nanoTime();
+            if (delay > 0) {
+                LockSupport.parkNanos(delay);
+            }
+            long intendedStart = next;
+            executor.execute(() -> scenario.run(intendedStart));
+        }
+        return finish(executor, stats, start);
+    }
+
+    public LoadReport runClosed(int concurrency, Duration duration) throws InterruptedException {
+        LoadStats stats = new LoadStats();
+        ProductScenario scenario = new ProductScenario(productService, categoryService, stats);
+        ExecutorService executor = ExecutorUtils.newScenarioExecutor(concurrency);
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        for (int i = 0; i < concurrency; i++) {
+            executor.execute(() -> {
+                while (System.nanoTime() < end) {
+                    scenario.run(System.nanoTime());
+                }
+            });
+        }
+        return finish(executor, stats, start);
+    }
+
+    private LoadReport finish(ExecutorService executor, LoadStats stats, long start) throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.MINUTES);
+        return new LoadReport(stats, System.nanoTime() - start);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (System.getProperty("http.logging.async") == null) {
+            System.setProperty("http.logging.async", "true");
+        }
+        Model model = Model.valueOf(ConfigUtils.getProperty("load.model", "CLOSED"));
+        int concurrency = ConfigUtils.getInt("load.concurrency", 16);
+        double rps = Double.parseDouble(ConfigUtils.getProperty("load.rps", "50"));
+        Duration duration = Duration.ofSeconds(ConfigUtils.getLong("load.durationSeconds", 60));
+
+        LoadRunner runner = new LoadRunner(
+                RetrofitUtils.getRetrofit().create(ProductService.class),
+                RetrofitUtils.getRetrofit().create(CategoryService.class));
+        LoadReport report = model == Model.OPEN
+                ? runner.runOpen(rps, concurrency, duration)
+                : runner.runClosed(concurrency, duration);
+        System.out.println(report);
+        System.exit(0);
+    }
+}
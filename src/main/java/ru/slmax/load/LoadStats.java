@@ -0,0 +1,25 @@
+package ru.slmax.load;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link EndpointStats} by endpoint name, e.g. {@code GET products/{id}}.
+ */
+public class LoadStats {
+    private final ConcurrentMap<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+
+    public EndpointStats endpoint(String name) {
+        return endpoints.computeIfAbsent(name, key -> new EndpointStats());
+    }
+
+    public void record(String endpoint, long latencyNanos, boolean success) {
+        endpoint(endpoint).record(latencyNanos, success);
+    }
+
+    public Map<String, EndpointStats> getEndpoints() {
+        return new TreeMap<>(endpoints);
+    }
+}
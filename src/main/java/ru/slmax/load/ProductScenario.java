@@ -0,0 +1,82 @@
+package ru.slmax.load;
+
+import com.github.javafaker.Faker;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Response;
+import ru.slmax.dto.Product;
+import ru.slmax.enums.CategoryType;
+import ru.slmax.service.CategoryService;
+import ru.slmax.service.ProductService;
+
+/**
+ * The CRUD flow of ProductTests as one load scenario: create → get → get category → update → delete.
+ * Every step is recorded under its endpoint, the whole flow under {@link #SCENARIO}.
+ */
+public class ProductScenario {
+    public static final String SCENARIO = "scenario";
+
+    private final ProductService productService;
+    private final CategoryService categoryService;
+    private final LoadStats stats;
+    private final Faker faker = new Faker();
+
+    public ProductScenario(ProductService productService, CategoryService categoryService, LoadStats stats) {
+        this.productService = productService;
+        this.categoryService = categoryService;
+        this.stats = stats;
+    }
+
+    /**
+     * Runs the scenario once and records it.
+     *
+     * @param intendedStartNanos when the scenario should have started; the scenario latency is measured from it,
+     *                           so a backed-up open-model run shows its queueing delay
+     */
+    public void run(long intendedStartNanos) {
+        boolean success = false;
+        try {
+            success = execute();
+        } finally {
+            stats.record(SCENARIO, System.nanoTime() - intendedStartNanos, success);
+        }
+    }
+
+    private boolean execute() {
+        CategoryType category = CategoryType.values()[(int) (Math.random() * CategoryType.values().length)];
+        Product product = new Product()
+                .withTitle(faker.food().dish())
+                .withCategoryTitle(category.getTitle())
+                .withPrice((int) ((Math.random() + 1) * 100));
+
+        Response<Product> created = call("POST products", productService.createProduct(product), 201);
+        if (created == null || created.body() == null) {
+            return false;
+        }
+        Integer id = created.body().getId();
+        boolean success = call("GET products/{id}", productService.getProduct(id), 200) != null;
+        success &= call("GET categories/{id}", categoryService.getCategory(category.getId()), 200) != null;
+        success &= call("PUT products", productService.updateProduct(created.body().withPrice(product.getPrice() + 1)), 200) != null;
+        Response<ResponseBody> deleted = call("DELETE products/{id}", productService.deleteProduct(id), 200);
+        if (deleted != null && deleted.body() != null) {
+            deleted.body().close();
+        }
+        return success && deleted != null;
+    }
+
+    /**
+     * Executes the call and records it; returns {@code null} if it failed or answered another status.
+     */
+    private <T> Response<T> call(String endpoint, Call<T> call, int expectedCode) {
+        long start = System.nanoTime();
+        try {
+            Response<T> response = call.execute();
+            boolean success = response.code() == expectedCode;
+            stats.record(endpoint, System.nanoTime() - start, success);
+            return success ? response : null;
+        } catch (Exception e) {
+            stats.record(endpoint, System.nanoTime() - start, false);
+            return null;
+        }
+    }
+}
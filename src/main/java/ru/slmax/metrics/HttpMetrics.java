@@ -0,0 +1,99 @@
+package ru.slmax.metrics;
+
+import io.qameta.allure.Allure;
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static ru.slmax.metrics.LatencyRecorder.millis;
+
+/**
+ * {@link RouteMetrics} of all calls that went through a {@link HttpMetricsInterceptor}.
+ * A {@link #openScope() scope} counts only the calls created on one thread, e.g. those of one test
+ * while other tests run in parallel.
+ */
+public class HttpMetrics {
+    private static final ThreadLocal<HttpMetrics> currentScope = new ThreadLocal<>();
+
+    private final HttpMetrics parent;
+    private final ConcurrentMap<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+
+    public HttpMetrics() {
+        this(null);
+    }
+
+    private HttpMetrics(HttpMetrics parent) {
+        this.parent = parent;
+    }
+
+    public RouteMetrics route(String route) {
+        return routes.computeIfAbsent(route, key -> new RouteMetrics(parent == null ? null : parent.route(key)));
+    }
+
+    /**
+     * Starts new metrics for the calls created on the current thread until {@link #closeScope()}, async ones
+     * included; the calls are still counted here too. The calls must be tagged with {@link #currentScope()},
+     * as {@link ru.slmax.utils.RetrofitUtils} does when it creates them.
+     */
+    public HttpMetrics openScope() {
+        HttpMetrics scope = new HttpMetrics(this);
+        currentScope.set(scope);
+        return scope;
+    }
+
+    public static HttpMetrics currentScope() {
+        return currentScope.get();
+    }
+
+    public static void closeScope() {
+        currentScope.remove();
+    }
+
+    boolean isScopeOf(HttpMetrics metrics) {
+        return parent == metrics;
+    }
+
+    public List<RouteSnapshot> snapshot() {
+        List<RouteSnapshot> snapshots = new ArrayList<>();
+        for (Map.Entry<String, RouteMetrics> entry : new TreeMap<>(routes).entrySet()) {
+            snapshots.add(entry.getValue().snapshot(entry.getKey()));
+        }
+        return snapshots;
+    }
+
+    public String report() {
+        return report(snapshot());
+    }
+
+    public static String report(List<RouteSnapshot> routes) {
+        StringBuilder report = new StringBuilder(String.format("%-24s %8s %8s %10s %10s %9s %9s %9s %9s %9s  %s%n",
+                "route", "calls", "failed", "bytes out", "bytes in", "ttfb p50", "ttfb p99", "p50 ms", "p99 ms", "max ms", "status codes"));
+        for (RouteSnapshot route : routes) {
+            Histogram ttfb = route.getTimeToFirstByte();
+            Histogram total = route.getTotal();
+            report.append(String.format("%-24s %8d %8d %10d %10d %9.2f %9.2f %9.2f %9.2f %9.2f  %s%n",
+                    route.getRoute(), route.getResponses(), route.getFailures(), route.getBytesOut(), route.getBytesIn(),
+                    millis(ttfb.getValueAtPercentile(50)), millis(ttfb.getValueAtPercentile(99)),
+                    millis(total.getValueAtPercentile(50)), millis(total.getValueAtPercentile(99)),
+                    millis(total.getMaxValue()), route.getStatusCodes()));
+        }
+        return report.toString();
+    }
+
+    public void attachToAllure(String name) {
+        attachToAllure(name, snapshot());
+    }
+
+    public static void attachToAllure(String name, List<RouteSnapshot> routes) {
+        Allure.addAttachment(name, "text/plain", report(routes), ".txt");
+    }
+
+    public void reset() {
+        routes.clear();
+    }
+}
@@ -0,0 +1,149 @@
+package ru.slmax.metrics;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+import retrofit2.Invocation;
+import retrofit2.http.DELETE;
+import retrofit2.http.GET;
+import retrofit2.http.HEAD;
+import retrofit2.http.HTTP;
+import retrofit2.http.PATCH;
+import retrofit2.http.POST;
+import retrofit2.http.PUT;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Records every call into {@link HttpMetrics} under the route template of its Retrofit method,
+ * e.g. {@code GET products/{id}}, so calls for different ids share one histogram.
+ * Time to first byte is taken when the response headers arrive, total time when the body is read or closed.
+ * A call tagged with a {@link HttpMetrics#openScope() scope} of the metrics is recorded into the scope as well.
+ * Register it as a network interceptor so that logging and cached responses are not measured.
+ */
+public class HttpMetricsInterceptor implements Interceptor {
+    private final HttpMetrics metrics;
+    private final ConcurrentMap<Method, String> routes = new ConcurrentHashMap<>();
+
+    public HttpMetricsInterceptor(HttpMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        HttpMetrics scope = request.tag(HttpMetrics.class);
+        RouteMetrics route = (scope != null && scope.isScopeOf(metrics) ? scope : metrics).route(route(request));
+        long requestBytes = request.body() == null ? 0 : request.body().contentLength();
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            route.recordFailure(requestBytes);
+            throw e;
+        }
+        route.recordResponse(response.code(), System.nanoTime() - start, requestBytes);
+        ResponseBody body = response.body();
+        if (body == null) {
+            route.recordBody(System.nanoTime() - start, 0);
+            return response;
+        }
+        return response.newBuilder()
+                .body(new MeasuredResponseBody(body, route, start))
+                .build();
+    }
+
+    private String route(Request request) {
+        Invocation invocation = request.tag(Invocation.class);
+        if (invocation == null) {
+            return request.method() + " " + request.url().encodedPath();
+        }
+        return routes.computeIfAbsent(invocation.method(), method -> request.method() + " " + template(method));
+    }
+
+    private static String template(Method method) {
+        for (Annotation annotation : method.getAnnotations()) {
+            if (annotation instanceof GET) return ((GET) annotation).value();
+            if (annotation instanceof POST) return ((POST) annotation).value();
+            if (annotation instanceof PUT) return ((PUT) annotation).value();
+            if (annotation instanceof DELETE) return ((DELETE) annotation).value();
+            if (annotation instanceof PATCH) return ((PATCH) annotation).value();
+            if (annotation instanceof HEAD) return ((HEAD) annotation).value();
+            if (annotation instanceof HTTP) return ((HTTP) annotation).path();
+        }
+        return method.getName();
+    }
+
+    private static class MeasuredResponseBody extends ResponseBody {
+        private final ResponseBody body;
+        private final RouteMetrics route;
+        private final long start;
+        private long bytes;
+        private boolean recorded;
+        private BufferedSource source;
+
+        MeasuredResponseBody(ResponseBody body, RouteMetrics route, long start) {
+            this.body = body;
+            this.route = route;
+            this.start = start;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return body.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return body.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            if (source == null) {
+                source = Okio.buffer(counting(body.source()));
+            }
+            return source;
+        }
+
+        @Override
+        public void close() {
+            finish();
+            body.close();
+        }
+
+        private Source counting(Source delegate) {
+            return new ForwardingSource(delegate) {
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    long read = super.read(sink, byteCount);
+                    if (read == -1) {
+                        finish();
+                    } else {
+                        bytes += read;
+                    }
+                    return read;
+                }
+            };
+        }
+
+        private void finish() {
+            if (!recorded) {
+                recorded = true;
+                route.recordBody(System.nanoTime() - start, bytes);
+            }
+        }
+    }
+}
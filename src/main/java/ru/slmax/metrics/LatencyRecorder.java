@@ -0,0 +1,33 @@
+package ru.slmax.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wait-free latency recording into an HdrHistogram, in nanoseconds up to five minutes.
+ * Snapshots can be taken while other threads keep recording.
+ */
+public class LatencyRecorder {
+    public static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private final Recorder recorder = new Recorder(MAX_LATENCY_NANOS, 3);
+    private final Histogram total = new Histogram(MAX_LATENCY_NANOS, 3);
+
+    public void record(long latencyNanos) {
+        recorder.recordValue(Math.min(Math.max(latencyNanos, 0), MAX_LATENCY_NANOS));
+    }
+
+    /**
+     * Everything recorded so far.
+     */
+    public synchronized Histogram snapshot() {
+        total.add(recorder.getIntervalHistogram());
+        return total.copy();
+    }
+
+    public static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,61 @@
+package ru.slmax.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latencies of one route, e.g. {@code GET products/{id}}.
+ * The route of a {@link HttpMetrics#openScope() scope} records into the same route of its parent too.
+ */
+public class RouteMetrics {
+    private final RouteMetrics parent;
+    private final LatencyRecorder timeToFirstByte = new LatencyRecorder();
+    private final LatencyRecorder total = new LatencyRecorder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final ConcurrentMap<Integer, LongAdder> statusCodes = new ConcurrentHashMap<>();
+
+    public RouteMetrics() {
+        this(null);
+    }
+
+    RouteMetrics(RouteMetrics parent) {
+        this.parent = parent;
+    }
+
+    void recordResponse(int code, long timeToFirstByteNanos, long requestBytes) {
+        statusCodes.computeIfAbsent(code, key -> new LongAdder()).increment();
+        timeToFirstByte.record(timeToFirstByteNanos);
+        bytesOut.add(Math.max(requestBytes, 0));
+        if (parent != null) {
+            parent.recordResponse(code, timeToFirstByteNanos, requestBytes);
+        }
+    }
+
+    void recordBody(long totalNanos, long responseBytes) {
+        total.record(totalNanos);
+        bytesIn.add(responseBytes);
+        if (parent != null) {
+            parent.recordBody(totalNanos, responseBytes);
+        }
+    }
+
+    void recordFailure(long requestBytes) {
+        failures.increment();
+        bytesOut.add(Math.max(requestBytes, 0));
+        if (parent != null) {
+            parent.recordFailure(requestBytes);
+        }
+    }
+
+    public RouteSnapshot snapshot(String route) {
+        Map<Integer, Long> codes = new TreeMap<>();
+        statusCodes.forEach((code, count) -> codes.put(code, count.sum()));
+        return new RouteSnapshot(route, codes, failures.sum(), bytesOut.sum(), bytesIn.sum(),
+                timeToFirstByte.snapshot(), total.snapshot());
+    }
+}
@@ -0,0 +1,28 @@
+package ru.slmax.metrics;
+
+import lombok.Value;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+
+/**
+ * Immutable view of {@link RouteMetrics} at one point in time. Latencies are in nanoseconds.
+ */
+@Value
+public class RouteSnapshot {
+    String route;
+    Map<Integer, Long> statusCodes;
+    long failures;
+    long bytesOut;
+    long bytesIn;
+    Histogram timeToFirstByte;
+    Histogram total;
+
+    public long getResponses() {
+        long responses = 0;
+        for (long count : statusCodes.values()) {
+            responses += count;
+        }
+        return responses;
+    }
+}
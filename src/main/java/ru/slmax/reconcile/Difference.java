@@ -0,0 +1,50 @@
+package ru.slmax.reconcile;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * One product on which the database and the API disagree.
+ */
+@Value
+public class Difference {
+    Kind kind;
+    long id;
+    /**
+     * The database row, null for {@link Kind#EXTRA_IN_API}.
+     */
+    ProductRow db;
+    /**
+     * The API row, null for {@link Kind#MISSING_IN_API}.
+     */
+    ProductRow api;
+    /**
+     * Names of the fields that differ, for {@link Kind#MISMATCH}.
+     */
+    List<String> fields;
+
+    public enum Kind {
+        MISSING_IN_API,
+        EXTRA_IN_API,
+        MISMATCH,
+        DUPLICATE_IN_API,
+        DUPLICATE_IN_DB
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case MISSING_IN_API:
+                return "id " + id + " missing in API: " + db;
+            case EXTRA_IN_API:
+                return "id " + id + " not in database: " + api;
+            case DUPLICATE_IN_API:
+                return "id " + id + " returned more than once by API: " + api;
+            case DUPLICATE_IN_DB:
+                return "id " + id + " read more than once from database: " + db;
+            default:
+                return "id " + id + " differs in " + fields + ": database " + db + ", API " + api;
+        }
+    }
+}
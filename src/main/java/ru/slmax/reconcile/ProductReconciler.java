@@ -0,0 +1,344 @@
+package ru.slmax.reconcile;
+
+import lombok.SneakyThrows;
+import okhttp3.ResponseBody;
+import ru.slmax.cache.CategoryCache;
+import ru.slmax.db.model.Categories;
+import ru.slmax.db.model.ProductsExample;
+import ru.slmax.dto.Product;
+import ru.slmax.utils.DbUtils;
+import ru.slmax.utils.IdSet;
+import ru.slmax.utils.JsonStreamUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Compares the {@code products} table with the catalog of the API without holding either in memory.
+ * <p>
+ * Both sides are read at the same time, the database through a cursor ordered by id and the API through
+ * {@link JsonStreamUtils}, and their rows are grouped into buckets of {@value #BUCKET_IDS} consecutive ids.
+ * As soon as both readers have moved past a bucket it is merge-joined on id by a task of the fork-join pool.
+ * When both sides come ordered by id, the reader that is ahead waits once {@value #MAX_PENDING_BUCKETS}
+ * buckets are waiting for the other one, so only those buckets are in memory. A side that turns out
+ * not to be ordered stops releasing buckets and no longer holds the other one back; its rows that arrive
+ * for buckets already compared are reconciled at the end, so the result is the same in any order,
+ * only memory use grows.
+ */
+public class ProductReconciler {
+    private static final int BUCKET_SHIFT = 12;
+    private static final int BUCKET_IDS = 1 << BUCKET_SHIFT;
+    private static final int MAX_PENDING_BUCKETS = 16;
+    private static final int DB = 0;
+    private static final int API = 1;
+
+    private final ForkJoinPool pool;
+    private final CategoryCache categories;
+
+    public ProductReconciler(ForkJoinPool pool, CategoryCache categories) {
+        this.pool = pool;
+        this.categories = categories;
+    }
+
+    public ProductReconciler() {
+        this(ForkJoinPool.commonPool(), DbUtils.getCategoryCache());
+    }
+
+    /**
+     * A stream of rows of one side, passed to the sink one by one.
+     */
+    public interface RowSource {
+        void forEach(Consumer<ProductRow> sink) throws Exception;
+    }
+
+    /**
+     * Reconciles the whole table with the whole catalog in {@code apiBody}, which is closed when read.
+     */
+    public ReconciliationReport reconcile(ResponseBody apiBody) {
+        return reconcile(new ProductsExample(), product -> true, apiBody);
+    }
+
+    /**
+     * Reconciles the rows the example selects with the catalog products the filter accepts,
+     * e.g. the products of one test run selected by title prefix on both sides.
+     */
+    public ReconciliationReport reconcile(ProductsExample dbFilter, Predicate<Product> apiFilter, ResponseBody apiBody) {
+        return reconcile(dbRows(dbFilter), apiRows(apiFilter, apiBody));
+    }
+
+    @SneakyThrows
+    public ReconciliationReport reconcile(RowSource dbSource, RowSource apiSource) {
+        long start = System.nanoTime();
+        Merge merge = new Merge();
+        SideReader dbReader = new SideReader(DB, merge);
+        SideReader apiReader = new SideReader(API, merge);
+
+        CompletableFuture<Void> api = new CompletableFuture<>();
+        Thread apiThread = new Thread(() -> {
+            try {
+                apiReader.read(apiSource);
+                api.complete(null);
+            } catch (Throwable e) {
+                api.completeExceptionally(e);
+            }
+        }, "reconcile-api-reader");
+        apiThread.setDaemon(true);
+        apiThread.start();
+        try {
+            dbReader.read(dbSource);
+            api.join();
+        } catch (CompletionException e) {
+            throw e.getCause();
+        }
+
+        long matched = 0;
+        List<Difference> differences = new ArrayList<>(dbReader.duplicates);
+        differences.addAll(apiReader.duplicates);
+        for (ForkJoinTask<BucketResult> task : merge.tasks) {
+            BucketResult result = task.join();
+            matched += result.matched;
+            differences.addAll(result.differences);
+        }
+        matched += reconcileLate(merge, differences);
+        differences.sort(Comparator.comparingLong(Difference::getId).thenComparing(Difference::getKind));
+        return new ReconciliationReport(dbReader.rows, apiReader.rows, matched, differences, System.nanoTime() - start);
+    }
+
+    /**
+     * Rows of {@code products} selected by the example, ordered by id, with category ids resolved through the cache.
+     * The example is copied, its order by clause is replaced.
+     */
+    public RowSource dbRows(ProductsExample example) {
+        ProductsExample byId = new ProductsExample();
+        byId.getOredCriteria().addAll(example.getOredCriteria());
+        byId.setDistinct(example.isDistinct());
+        byId.setLimit(example.getLimit());
+        byId.setOffset(example.getOffset());
+        byId.setOrderByClause("id");
+        return sink -> DbUtils.scanProducts(byId, product -> {
+            Categories category = product.getCategory_id() == null ? null
+                    : categories.byId(Math.toIntExact(product.getCategory_id()));
+            sink.accept(new ProductRow(product.getId(), product.getTitle(), product.getPrice(),
+                    category == null ? null : category.getTitle()));
+        });
+    }
+
+    /**
+     * Products of a catalog body, e.g. of {@code ProductService.getProductsStream()}, that the filter accepts.
+     */
+    public static RowSource apiRows(Predicate<Product> filter, ResponseBody body) {
+        return sink -> JsonStreamUtils.forEachProduct(body, product -> {
+            if (filter.test(product)) {
+                sink.accept(new ProductRow(product.getId(), product.getTitle(), product.getPrice(), product.getCategoryTitle()));
+            }
+        });
+    }
+
+    /**
+     * Late rows of one side meet the rows of the other side that were reported as unmatched.
+     */
+    private long reconcileLate(Merge merge, List<Difference> differences) {
+        if (merge.late[DB].isEmpty() && merge.late[API].isEmpty()) {
+            return 0;
+        }
+        Map<Long, Difference> unmatched = new HashMap<>();
+        for (Difference difference : differences) {
+            if (difference.getKind() == Difference.Kind.MISSING_IN_API || difference.getKind() == Difference.Kind.EXTRA_IN_API) {
+                unmatched.put(difference.getId(), difference);
+            }
+        }
+        long matched = 0;
+        for (int side = DB; side <= API; side++) {
+            for (ProductRow row : merge.late[side]) {
+                Difference other = unmatched.remove(row.getId());
+                if (other == null) {
+                    unmatched.put(row.getId(), side == DB
+                            ? new Difference(Difference.Kind.MISSING_IN_API, row.getId(), row, null, null)
+                            : new Difference(Difference.Kind.EXTRA_IN_API, row.getId(), null, row, null));
+                    continue;
+                }
+                Difference mismatch = side == DB ? compare(row, other.getApi()) : compare(other.getDb(), row);
+                if (mismatch == null) {
+                    matched++;
+                } else {
+                    unmatched.put(row.getId(), mismatch);
+                }
+            }
+        }
+        differences.removeIf(difference -> difference.getKind() == Difference.Kind.MISSING_IN_API
+                || difference.getKind() == Difference.Kind.EXTRA_IN_API);
+        differences.addAll(unmatched.values());
+        return matched;
+    }
+
+    private static Difference compare(ProductRow db, ProductRow api) {
+        List<String> fields = new ArrayList<>(3);
+        if (!Objects.equals(db.getTitle(), api.getTitle())) {
+            fields.add("title");
+        }
+        if (!Objects.equals(db.getPrice(), api.getPrice())) {
+            fields.add("price");
+        }
+        if (!Objects.equals(db.getCategoryTitle(), api.getCategoryTitle())) {
+            fields.add("categoryTitle");
+        }
+        return fields.isEmpty() ? null : new Difference(Difference.Kind.MISMATCH, db.getId(), db, api, fields);
+    }
+
+    /**
+     * Reads one side, hands its rows over bucket by bucket and reports ids it sees twice.
+     */
+    private static class SideReader {
+        final int side;
+        final Merge merge;
+        final IdSet seen = new IdSet();
+        final List<Difference> duplicates = new ArrayList<>();
+        long rows;
+        boolean ordered = true;
+        long lastId = -1;
+        long bucket = -1;
+        List<ProductRow> bucketRows = new ArrayList<>();
+
+        SideReader(int side, Merge merge) {
+            this.side = side;
+            this.merge = merge;
+        }
+
+        @SneakyThrows
+        void read(RowSource source) {
+            try {
+                source.forEach(this::accept);
+            } finally {
+                // also on failure, so the other reader does not wait for this one
+                merge.handOff(side, bucket, bucketRows, Long.MAX_VALUE);
+            }
+        }
+
+        private void accept(ProductRow row) {
+            rows++;
+            if (!seen.add(row.getId())) {
+                duplicates.add(side == DB
+                        ? new Difference(Difference.Kind.DUPLICATE_IN_DB, row.getId(), row, null, null)
+                        : new Difference(Difference.Kind.DUPLICATE_IN_API, row.getId(), null, row, null));
+                return;
+            }
+            ordered &= row.getId() > lastId;
+            lastId = Math.max(lastId, row.getId());
+            long rowBucket = row.getId() >>> BUCKET_SHIFT;
+            if (rowBucket != bucket) {
+                // while the side is ordered, every bucket below the current one is complete
+                merge.handOff(side, bucket, bucketRows, ordered ? rowBucket : -1);
+                bucketRows = new ArrayList<>();
+                bucket = rowBucket;
+            }
+            bucketRows.add(row);
+        }
+    }
+
+    /**
+     * Buckets waiting for one of the sides, and the tasks comparing the complete ones.
+     */
+    private class Merge {
+        final TreeMap<Long, List<ProductRow>[]> pending = new TreeMap<>();
+        final long[] complete = new long[2];
+        final boolean[] unordered = new boolean[2];
+        long compared;
+        @SuppressWarnings("unchecked")
+        final List<ProductRow>[] late = new List[]{new ArrayList<>(), new ArrayList<>()};
+        final List<ForkJoinTask<BucketResult>> tasks = new ArrayList<>();
+
+        /**
+         * Blocks while this side is ahead and too many buckets wait for the other one.
+         *
+         * @param completeBelow buckets below this one will get no more rows from the side;
+         *                      -1 when the side is not ordered, {@code Long.MAX_VALUE} when it has ended
+         */
+        @SneakyThrows
+        @SuppressWarnings("unchecked")
+        synchronized void handOff(int side, long bucket, List<ProductRow> rows, long completeBelow) {
+            if (!rows.isEmpty()) {
+                if (bucket < compared) {
+                    late[side].addAll(rows);
+                } else {
+                    List<ProductRow>[] sides = pending.computeIfAbsent(bucket, key -> new List[]{new ArrayList<>(), new ArrayList<>()});
+                    sides[side].addAll(rows);
+                }
+            }
+            unordered[side] |= completeBelow < 0;
+            complete[side] = Math.max(complete[side], completeBelow);
+            long ready = Math.min(complete[DB], complete[API]);
+            while (!pending.isEmpty() && pending.firstKey() < ready) {
+                List<ProductRow>[] sides = pending.pollFirstEntry().getValue();
+                tasks.add(pool.submit(new CompareBucket(sides[DB], sides[API])));
+            }
+            compared = Math.max(compared, ready);
+            notifyAll();
+
+            int other = 1 - side;
+            while (pending.size() > MAX_PENDING_BUCKETS && complete[side] > complete[other] && complete[side] != Long.MAX_VALUE
+                    && !unordered[side] && !unordered[other]) {
+                wait();
+            }
+        }
+    }
+
+    private static class BucketResult {
+        long matched;
+        final List<Difference> differences = new ArrayList<>();
+    }
+
+    /**
+     * Merge join of the two sides of a bucket on id.
+     */
+    private static class CompareBucket extends RecursiveTask<BucketResult> {
+        private final List<ProductRow> db;
+        private final List<ProductRow> api;
+
+        CompareBucket(List<ProductRow> db, List<ProductRow> api) {
+            this.db = db;
+            this.api = api;
+        }
+
+        @Override
+        protected BucketResult compute() {
+            db.sort(Comparator.comparingLong(ProductRow::getId));
+            api.sort(Comparator.comparingLong(ProductRow::getId));
+            BucketResult result = new BucketResult();
+            int i = 0;
+            int j = 0;
+            while (i < db.size() || j < api.size()) {
+                ProductRow dbRow = i < db.size() ? db.get(i) : null;
+                ProductRow apiRow = j < api.size() ? api.get(j) : null;
+                if (apiRow == null || dbRow != null && dbRow.getId() < apiRow.getId()) {
+                    result.differences.add(new Difference(Difference.Kind.MISSING_IN_API, dbRow.getId(), dbRow, null, null));
+                    i++;
+                } else if (dbRow == null || apiRow.getId() < dbRow.getId()) {
+                    result.differences.add(new Difference(Difference.Kind.EXTRA_IN_API, apiRow.getId(), null, apiRow, null));
+                    j++;
+                } else {
+                    Difference mismatch = compare(dbRow, apiRow);
+                    if (mismatch == null) {
+                        result.matched++;
+                    } else {
+                        result.differences.add(mismatch);
+                    }
+                    i++;
+                    j++;
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package ru.slmax.reconcile;
+
+import lombok.Value;
+
+/**
+ * The fields of a product both sides expose; the database side has its category id resolved to a title.
+ */
+@Value
+public class ProductRow {
+    long id;
+    String title;
+    Integer price;
+    String categoryTitle;
+}
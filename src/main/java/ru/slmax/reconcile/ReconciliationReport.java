@@ -0,0 +1,46 @@
+package ru.slmax.reconcile;
+
+import lombok.Value;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of one {@link ProductReconciler} run. Differences are ordered by id.
+ */
+@Value
+public class ReconciliationReport {
+    long dbRows;
+    long apiRows;
+    long matched;
+    List<Difference> differences;
+    long elapsedNanos;
+
+    public boolean isConsistent() {
+        return differences.isEmpty();
+    }
+
+    public Map<Difference.Kind, Long> getCounts() {
+        Map<Difference.Kind, Long> counts = new EnumMap<>(Difference.Kind.class);
+        for (Difference difference : differences) {
+            counts.merge(difference.getKind(), 1L, Long::sum);
+        }
+        return counts;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(String.format("%d database rows, %d API rows, %d matched, %s in %d ms",
+                dbRows, apiRows, matched, isConsistent() ? "no differences" : getCounts().toString(),
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos)));
+        for (int i = 0; i < differences.size() && i < 20; i++) {
+            text.append(System.lineSeparator()).append("  ").append(differences.get(i));
+        }
+        if (differences.size() > 20) {
+            text.append(System.lineSeparator()).append("  ... ").append(differences.size() - 20).append(" more");
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,13 @@
+package ru.slmax.service;
+
+import retrofit2.Response;
+import retrofit2.http.GET;
+import retrofit2.http.Path;
+import ru.slmax.dto.Category;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface CategoryAsyncService {
+    @GET("categories/{id}")
+    CompletableFuture<Response<Category>> getCategory(@Path("id") Integer id);
+}
@@ -0,0 +1,26 @@
+package ru.slmax.service;
+
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+import retrofit2.http.*;
+import ru.slmax.dto.Product;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+
+public interface ProductAsyncService {
+    @GET("products")
+    CompletableFuture<Response<ArrayList<Product>>> getProducts();
+
+    @GET("products/{id}")
+    CompletableFuture<Response<Product>> getProduct(@Path("id") Integer id);
+
+    @POST("products")
+    CompletableFuture<Response<Product>> createProduct(@Body Product product);
+
+    @PUT("products")
+    CompletableFuture<Response<Product>> updateProduct(@Body Product product);
+
+    @DELETE("products/{id}")
+    CompletableFuture<Response<ResponseBody>> deleteProduct(@Path("id") int id);
+}
@@ -11,6 +11,14 @@ public interface ProductService {
     @GET("products")
     Call<ArrayList<Product>> getProducts();
 
+    /**
+     * The same catalog as {@link #getProducts()}, but the body is not buffered: read it with
+     * {@link ru.slmax.utils.JsonStreamUtils} and close it when done.
+     */
+    @Streaming
+    @GET("products")
+    Call<ResponseBody> getProductsStream();
+
     @GET("products/{id}")
     Call<Product> getProduct(@Path("id") Integer id);
 
@@ -0,0 +1,127 @@
+package ru.slmax.utils;
+
+import okhttp3.internal.platform.Platform;
+import okhttp3.logging.HttpLoggingInterceptor;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands log lines to a bounded queue and writes them to the delegate on a background daemon thread,
+ * so the calling thread never waits for log formatting or I/O. When the queue is full the line is
+ * dropped and counted ({@link OverflowPolicy#DROP}), or the caller waits for space ({@link OverflowPolicy#BLOCK}).
+ * {@link #close()} writes out what is still queued; lines logged after it are written on the calling thread.
+ */
+public class AsyncLogger implements HttpLoggingInterceptor.Logger, Closeable {
+    private static final long CLOSE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    public enum OverflowPolicy { DROP, BLOCK }
+
+    private final HttpLoggingInterceptor.Logger delegate;
+    private final OverflowPolicy overflowPolicy;
+    private final BlockingQueue<String> queue;
+    private final LongAdder logged = new LongAdder();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean closed;
+    private long reportedDropped;
+
+    public AsyncLogger(HttpLoggingInterceptor.Logger delegate, int capacity, OverflowPolicy overflowPolicy) {
+        this.delegate = delegate;
+        this.overflowPolicy = overflowPolicy;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::write, "async-http-logger");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void log(String message) {
+        if (closed) {
+            write(message);
+        } else if (overflowPolicy == OverflowPolicy.BLOCK) {
+            try {
+                queue.put(message);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropped.incrementAndGet();
+            }
+        } else if (!queue.offer(message)) {
+            dropped.incrementAndGet();
+        }
+        if (closed) {
+            // closed while this line was queued: the writer may be gone already
+            drain();
+        }
+    }
+
+    /**
+     * Stops taking new lines into the queue, waits for the writer to stop and writes what is still queued
+     * on the calling thread.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        writer.interrupt();
+        try {
+            writer.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+    }
+
+    private void write() {
+        while (true) {
+            String message;
+            try {
+                message = queue.take();
+            } catch (InterruptedException e) {
+                // closed: close() and late callers write whatever is left
+                return;
+            }
+            write(message);
+        }
+    }
+
+    private void drain() {
+        String message;
+        while ((message = queue.poll()) != null) {
+            write(message);
+        }
+    }
+
+    private synchronized void write(String message) {
+        long droppedNow = dropped.get();
+        if (droppedNow != reportedDropped) {
+            Platform.get().log(Platform.WARN, "Async HTTP logger dropped " + (droppedNow - reportedDropped)
+                    + " messages, queue capacity is " + (queue.size() + queue.remainingCapacity()), null);
+            reportedDropped = droppedNow;
+        }
+        try {
+            delegate.log(message);
+            logged.increment();
+        } catch (RuntimeException e) {
+            Platform.get().log(Platform.WARN, "Async HTTP logger failed to write a message", e);
+        }
+    }
+
+    public long getLoggedCount() {
+        return logged.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public int getQueuedCount() {
+        return queue.size();
+    }
+}
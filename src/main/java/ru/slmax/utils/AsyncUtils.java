@@ -0,0 +1,56 @@
+package ru.slmax.utils;
+
+import lombok.experimental.UtilityClass;
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+import ru.slmax.dto.Product;
+import ru.slmax.service.ProductAsyncService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Fans out {@link ProductAsyncService} calls so that all of them are in flight at once.
+ * How many actually run in parallel is bounded by the dispatcher limits of {@link RetrofitUtils}.
+ */
+@UtilityClass
+public class AsyncUtils {
+
+    public CompletableFuture<List<Response<Product>>> createProducts(ProductAsyncService service, Collection<Product> products) {
+        return fanOut(products, service::createProduct);
+    }
+
+    public CompletableFuture<List<Response<Product>>> getProducts(ProductAsyncService service, Collection<Integer> ids) {
+        return fanOut(ids, service::getProduct);
+    }
+
+    public CompletableFuture<List<Response<ResponseBody>>> deleteProducts(ProductAsyncService service, Collection<Integer> ids) {
+        return fanOut(ids, service::deleteProduct);
+    }
+
+    /**
+     * Starts one call per element and completes with the results in the order of {@code arguments},
+     * or exceptionally as soon as any of the calls fails.
+     */
+    public <A, T> CompletableFuture<List<T>> fanOut(Collection<A> arguments, Function<A, CompletableFuture<T>> call) {
+        List<CompletableFuture<T>> futures = new ArrayList<>(arguments.size());
+        for (A argument : arguments) {
+            futures.add(call.apply(argument));
+        }
+        return allOf(futures);
+    }
+
+    public <T> CompletableFuture<List<T>> allOf(List<CompletableFuture<T>> futures) {
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    List<T> results = new ArrayList<>(futures.size());
+                    for (CompletableFuture<T> future : futures) {
+                        results.add(future.join());
+                    }
+                    return results;
+                });
+    }
+}
@@ -0,0 +1,27 @@
+package ru.slmax.utils;
+
+import lombok.Value;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows affected by a bulk {@link DbUtils} operation and how long it took.
+ */
+@Value
+public class BulkResult {
+    long rows;
+    long elapsedNanos;
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rows * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows in %d ms (%.0f rows/s)", rows, getElapsedMillis(), getRowsPerSecond());
+    }
+}
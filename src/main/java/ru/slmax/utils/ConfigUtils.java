@@ -0,0 +1,49 @@
+package ru.slmax.utils;
+
+import lombok.SneakyThrows;
+import lombok.experimental.UtilityClass;
+
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Settings read from {@code http.properties} on the classpath.
+ * A system property with the same key always wins over the file.
+ */
+@UtilityClass
+public class ConfigUtils {
+
+    public final String resource = "http.properties";
+
+    private final Properties properties = loadProperties();
+
+    @SneakyThrows
+    private Properties loadProperties() {
+        Properties fileProperties = new Properties();
+        try (InputStream stream = ConfigUtils.class.getClassLoader().getResourceAsStream(resource)) {
+            if (stream != null) {
+                fileProperties.load(stream);
+            }
+        }
+        return fileProperties;
+    }
+
+    public String getProperty(String key, String defaultValue) {
+        return System.getProperty(key, properties.getProperty(key, defaultValue));
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = getProperty(key, null);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    public long getLong(String key, long defaultValue) {
+        String value = getProperty(key, null);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = getProperty(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+}
@@ -2,10 +2,18 @@ package ru.slmax.utils;
 
 import com.github.javafaker.Faker;
 import lombok.SneakyThrows;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.datasource.pooled.PoolState;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.executor.BatchResult;
 import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import ru.slmax.cache.CacheStats;
+import ru.slmax.cache.CategoryCache;
+import ru.slmax.db.cache.MapperCache;
 import ru.slmax.db.dao.CategoriesMapper;
 import ru.slmax.db.dao.ProductsMapper;
 import ru.slmax.db.model.Categories;
@@ -14,30 +22,236 @@ import ru.slmax.db.model.Products;
 import ru.slmax.db.model.ProductsExample;
 import ru.slmax.dto.Category;
 
-import java.io.IOException;
+import javax.sql.DataSource;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public class DbUtils {
 
     public static String resource = "mybatisConfig.xml";
 
+    public static String environment = System.getProperty("db.environment", "qa");
+
+    /**
+     * Rows per multi-row statement of the bulk operations. Postgres allows at most 32767 bind parameters
+     * per statement, that is about 10000 product rows.
+     */
+    public static int batchSize = ConfigUtils.getInt("db.batch.size", 500);
+
+    /**
+     * Rows queued in the JDBC batch before it is sent to the database.
+     */
+    public static int flushSize = ConfigUtils.getInt("db.batch.flushSize", 10000);
+
+    /**
+     * Rows removed per statement by the chunked deletes, so no statement holds locks for long.
+     */
+    public static int cleanupChunkSize = ConfigUtils.getInt("db.cleanup.chunkSize", 1000);
+
+    /**
+     * Distance above the current max id used by {@link #findUnusedProductId}, so that rows inserted
+     * concurrently by the API do not take the returned id right away.
+     */
+    public static long unusedIdGap = ConfigUtils.getLong("db.unusedIdGap", 100000L);
+
+    /**
+     * Age after which {@link #getCategoryCache()} reloads the categories table.
+     */
+    public static long categoryCacheTtlMs = ConfigUtils.getLong("db.categoryCache.ttlMs", 600_000L);
+
     static Faker faker = new Faker();
 
-    private static SqlSession getSqlSession() throws IOException {
-        SqlSessionFactory sqlSessionFactory;
-        sqlSessionFactory = new SqlSessionFactoryBuilder().build(Resources.getResourceAsStream(resource));
-        return sqlSessionFactory.openSession(true);
+    private static final ConcurrentMap<String, SqlSessionFactory> sqlSessionFactories = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the factory of the given environment from {@link #resource}.
+     * Each factory is built once, on first use, and shared by the whole process.
+     */
+    public static SqlSessionFactory getSqlSessionFactory(String environment) {
+        return sqlSessionFactories.computeIfAbsent(environment, DbUtils::buildSqlSessionFactory);
+    }
+
+    public static SqlSessionFactory getSqlSessionFactory() {
+        return getSqlSessionFactory(environment);
     }
 
+    /**
+     * Builds a new factory of the given environment from {@link #resource}, with the variables the
+     * configuration refers to ({@code environment}, {@code secondLevelCache.*}) resolved from {@link ConfigUtils}.
+     * Every call parses the XMLs and creates a new pool: use {@link #getSqlSessionFactory(String)} instead.
+     */
     @SneakyThrows
+    public static SqlSessionFactory buildSqlSessionFactory(String environment) {
+        Properties variables = new Properties();
+        variables.setProperty("environment", environment);
+        variables.setProperty("secondLevelCache", String.valueOf(isSecondLevelCacheEnabled(environment)));
+        variables.setProperty("secondLevelCache.size", ConfigUtils.getProperty("db.secondLevelCache.size", "10000"));
+        variables.setProperty("secondLevelCache.ttlMs", ConfigUtils.getProperty("db.secondLevelCache.ttlMs", "60000"));
+        try (InputStream config = Resources.getResourceAsStream(resource)) {
+            return new SqlSessionFactoryBuilder().build(config, environment, variables);
+        }
+    }
+
+    /**
+     * Whether the mappers of the environment use the {@link MapperCache} second-level cache:
+     * {@code db.<environment>.secondLevelCache=true}, off by default. The API writes to the same tables,
+     * so {@link RetrofitUtils} clears the caches after every call that is not a GET.
+     */
+    public static boolean isSecondLevelCacheEnabled(String environment) {
+        return ConfigUtils.getBoolean("db." + environment + ".secondLevelCache", false);
+    }
+
+    /**
+     * Hits, misses and evictions of the second-level caches of the environment, one per mapper.
+     */
+    public static List<CacheStats> getSecondLevelCacheStats(String environment) {
+        return MapperCache.stats(environment);
+    }
+
+    /**
+     * Drops every second-level cache entry, e.g. after the database was changed outside of MyBatis.
+     */
+    public static void clearSecondLevelCaches() {
+        MapperCache.clearAll();
+    }
+
+    /**
+     * Connection pool statistics of the given environment, or {@code null}
+     * if its factory has not been built yet or its data source is not POOLED.
+     */
+    public static PoolState getPoolState(String environment) {
+        SqlSessionFactory sqlSessionFactory = sqlSessionFactories.get(environment);
+        if (sqlSessionFactory == null) {
+            return null;
+        }
+        DataSource dataSource = sqlSessionFactory.getConfiguration().getEnvironment().getDataSource();
+        return dataSource instanceof PooledDataSource ? ((PooledDataSource) dataSource).getPoolState() : null;
+    }
+
+    public static PoolState getPoolState() {
+        return getPoolState(environment);
+    }
+
+    private static final ThreadLocal<SqlSession> threadSession = new ThreadLocal<>();
+
+    /**
+     * Returns the autocommit session confined to the calling thread, opening it on first use.
+     * The session stays open until {@link #closeThreadSession()} is called from the same thread.
+     */
+    public static SqlSession getThreadSession() {
+        SqlSession sqlSession = threadSession.get();
+        if (sqlSession == null) {
+            sqlSession = getSqlSessionFactory().openSession(true);
+            threadSession.set(sqlSession);
+        }
+        return sqlSession;
+    }
+
+    /**
+     * Closes the session of the calling thread, if any, and returns its connection to the pool.
+     */
+    public static void closeThreadSession() {
+        SqlSession sqlSession = threadSession.get();
+        if (sqlSession != null) {
+            threadSession.remove();
+            sqlSession.close();
+        }
+    }
+
+    /**
+     * Mappers returned here may be shared between threads: every call is routed to the mapper of the
+     * calling thread's own session if it has opened one with {@link #getThreadSession()}, otherwise
+     * to a session opened for that call alone, so pool and executor threads never leave one open.
+     * Methods returning a {@link Cursor} need the thread session: the cursor reads from it after the call.
+     */
     public static CategoriesMapper getCategoriesMapper() {
-        return getSqlSession().getMapper(CategoriesMapper.class);
+        return getThreadBoundMapper(CategoriesMapper.class);
     }
 
-    @SneakyThrows
     public static ProductsMapper getProductMapper() {
-        return getSqlSession().getMapper(ProductsMapper.class);
+        return getThreadBoundMapper(ProductsMapper.class);
+    }
+
+    private static <T> T getThreadBoundMapper(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, new ThreadBoundMapper(type)));
+    }
+
+    private static class ThreadBoundMapper implements InvocationHandler {
+        private final Class<?> type;
+
+        ThreadBoundMapper(Class<?> type) {
+            this.type = type;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return toString();
+                }
+            }
+            SqlSession sqlSession = threadSession.get();
+            if (sqlSession == null) {
+                if (Cursor.class.isAssignableFrom(method.getReturnType())) {
+                    throw new IllegalStateException(type.getSimpleName() + "." + method.getName()
+                            + " returns a Cursor, which reads from its session after the call: open a session on this thread"
+                            + " with DbUtils.getThreadSession() first");
+                }
+                try (SqlSession callSession = getSqlSessionFactory().openSession(true)) {
+                    return invoke(callSession, method, args);
+                }
+            }
+            try {
+                return invoke(sqlSession, method, args);
+            } finally {
+                // a session publishes its second-level cache puts and flushes only on commit or close
+                if (sqlSession.getConfiguration().isCacheEnabled()) {
+                    sqlSession.commit();
+                }
+            }
+        }
+
+        private Object invoke(SqlSession sqlSession, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(sqlSession.getMapper(type), args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "ThreadBoundMapper(" + type.getName() + ")";
+        }
+    }
+
+    private static final ConcurrentMap<String, CategoryCache> categoryCaches = new ConcurrentHashMap<>();
+
+    /**
+     * The category cache of the current environment, loaded on first use and shared by all threads.
+     */
+    public static CategoryCache getCategoryCache() {
+        return categoryCaches.computeIfAbsent(environment,
+                env -> new CategoryCache(getCategoriesMapper(), categoryCacheTtlMs, TimeUnit.MILLISECONDS));
     }
 
     public static void createNewCategory(CategoriesMapper categoriesMapper) {
@@ -54,6 +268,17 @@ public class DbUtils {
         return categoriesMapper.selectByExample(new CategoriesExample());
     }
 
+    /**
+     * Returns a title no category has, made of {@code base} and a random suffix.
+     */
+    public static String findUnusedCategoryTitle(CategoriesMapper categoriesMapper, String base) {
+        String title;
+        do {
+            title = base + "-" + UUID.randomUUID().toString().substring(0, 8);
+        } while (categoriesMapper.existsByTitle(title));
+        return title;
+    }
+
     public static Integer countCategories(CategoriesMapper categoriesMapper) {
         long categoriesCount = categoriesMapper.countByExample(new CategoriesExample());
         return Math.toIntExact(categoriesCount);
@@ -64,6 +289,32 @@ public class DbUtils {
         return Math.toIntExact(products);
     }
 
+    /**
+     * Counts the products matching the criteria the {@code filter} adds.
+     */
+    public static Integer countProducts(ProductsMapper productsMapper, Consumer<ProductsExample.Criteria> filter) {
+        ProductsExample example = new ProductsExample();
+        filter.accept(example.createCriteria());
+        return Math.toIntExact(productsMapper.countByExample(example));
+    }
+
+    /**
+     * Counts the products whose title starts with the given prefix, e.g. the fixture prefix of one test,
+     * so the count does not move when other tests or agents change the table at the same time.
+     */
+    public static Integer countProductsByTitlePrefix(ProductsMapper productsMapper, String titlePrefix) {
+        return Math.toIntExact(productsMapper.countByExample(productsByTitlePrefix(titlePrefix)));
+    }
+
+    /**
+     * Selects the products whose title starts with the given prefix.
+     */
+    public static ProductsExample productsByTitlePrefix(String titlePrefix) {
+        ProductsExample example = new ProductsExample();
+        example.createCriteria().andTitleLike(escapeLike(titlePrefix) + "%");
+        return example;
+    }
+
     public static void updateProductById(ProductsMapper productsMapper, Products product) {
         productsMapper.updateByPrimaryKey(product);
     }
@@ -72,8 +323,138 @@ public class DbUtils {
         productsMapper.deleteByPrimaryKey(Long.valueOf(id));
     }
 
-    public static void deleteAllProducts(ProductsMapper productsMapper) {
-        productsMapper.selectByExample(new ProductsExample());
+    /**
+     * Inserts the products in a single transaction of a BATCH executor session,
+     * {@link #batchSize} rows per statement. Generated ids are not set back on the records.
+     */
+    public static BulkResult insertProducts(List<Products> products) {
+        long start = System.nanoTime();
+        try (SqlSession sqlSession = getSqlSessionFactory().openSession(ExecutorType.BATCH, false)) {
+            ProductsMapper productsMapper = sqlSession.getMapper(ProductsMapper.class);
+            long rows = 0;
+            int queued = 0;
+            for (List<Products> chunk : chunks(products, batchSize)) {
+                productsMapper.insertBatch(chunk);
+                queued += chunk.size();
+                if (queued >= flushSize) {
+                    rows += countUpdates(sqlSession.flushStatements());
+                    queued = 0;
+                }
+            }
+            rows += countUpdates(sqlSession.flushStatements());
+            sqlSession.commit();
+            return new BulkResult(rows, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Deletes the products with the given ids in a single transaction of a BATCH executor session,
+     * {@link #batchSize} ids per statement. Ids that do not exist are ignored.
+     */
+    public static BulkResult deleteProductsByIds(Collection<Long> ids) {
+        long start = System.nanoTime();
+        try (SqlSession sqlSession = getSqlSessionFactory().openSession(ExecutorType.BATCH, false)) {
+            ProductsMapper productsMapper = sqlSession.getMapper(ProductsMapper.class);
+            long rows = 0;
+            int queued = 0;
+            for (List<Long> chunk : chunks(new ArrayList<>(ids), batchSize)) {
+                productsMapper.deleteByIds(chunk);
+                queued += chunk.size();
+                if (queued >= flushSize) {
+                    rows += countUpdates(sqlSession.flushStatements());
+                    queued = 0;
+                }
+            }
+            rows += countUpdates(sqlSession.flushStatements());
+            sqlSession.commit();
+            return new BulkResult(rows, System.nanoTime() - start);
+        }
+    }
+
+    private static <T> List<List<T>> chunks(List<T> list, int size) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < list.size(); from += size) {
+            chunks.add(list.subList(from, Math.min(from + size, list.size())));
+        }
+        return chunks;
+    }
+
+    private static long countUpdates(List<BatchResult> batchResults) {
+        long rows = 0;
+        for (BatchResult batchResult : batchResults) {
+            for (int count : batchResult.getUpdateCounts()) {
+                rows += Math.max(count, 0);
+            }
+        }
+        return rows;
+    }
+
+    public static BulkResult deleteAllProducts(ProductsMapper productsMapper) {
+        return deleteProducts(productsMapper, null, null, null);
+    }
+
+    /**
+     * Deletes the products whose title starts with the given prefix, e.g. the run tag of the current run.
+     */
+    public static BulkResult deleteProductsByTitlePrefix(ProductsMapper productsMapper, String titlePrefix) {
+        return deleteProducts(productsMapper, titlePrefix, null, null);
+    }
+
+    /**
+     * Deletes the products with ids in {@code [fromId, toId]}; a {@code null} bound is open.
+     */
+    public static BulkResult deleteProductsByIdRange(ProductsMapper productsMapper, Long fromId, Long toId) {
+        return deleteProducts(productsMapper, null, fromId, toId);
+    }
+
+    /**
+     * Deletes matching products {@link #cleanupChunkSize} rows per statement until none are left.
+     * With an autocommit mapper every chunk is its own short transaction.
+     */
+    public static BulkResult deleteProducts(ProductsMapper productsMapper, String titlePrefix, Long fromId, Long toId) {
+        String titlePattern = titlePrefix == null ? null : escapeLike(titlePrefix) + "%";
+        long start = System.nanoTime();
+        long rows = 0;
+        int deleted;
+        do {
+            deleted = productsMapper.deleteChunk(titlePattern, fromId, toId, cleanupChunkSize);
+            rows += deleted;
+        } while (deleted > 0);
+        return new BulkResult(rows, System.nanoTime() - start);
+    }
+
+    /**
+     * Empties the whole table at once. Fails if other tables still reference products.
+     */
+    public static BulkResult truncateProducts(ProductsMapper productsMapper) {
+        long start = System.nanoTime();
+        long rows = productsMapper.countByExample(new ProductsExample());
+        productsMapper.truncate();
+        return new BulkResult(rows, System.nanoTime() - start);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    public static Long findUnusedProductId(ProductsMapper productsMapper) {
+        return productsMapper.selectUnusedId(unusedIdGap);
+    }
+
+    /**
+     * Ids of all products, streamed from the database into an {@link IdSet}: no row objects are kept,
+     * and membership checks and diffs against ids seen through the API are bit operations.
+     */
+    @SneakyThrows
+    public static IdSet selectProductIds() {
+        try (SqlSession sqlSession = getSqlSessionFactory().openSession(false);
+             Cursor<Long> cursor = sqlSession.getMapper(ProductsMapper.class).selectIdsWithCursor()) {
+            IdSet ids = new IdSet();
+            for (Long id : cursor) {
+                ids.add(id);
+            }
+            return ids;
+        }
     }
 
     public static Products selectProductById(ProductsMapper productsMapper, Long id) {
@@ -83,4 +464,72 @@ public class DbUtils {
     public static List<Products> selectAllProducts(ProductsMapper productsMapper) {
         return productsMapper.selectByExample(new ProductsExample());
     }
+
+    public static Iterable<List<Products>> productPages(ProductsMapper productsMapper, int pageSize) {
+        return productPages(productsMapper, pageSize, criteria -> { });
+    }
+
+    /**
+     * Pages of at most {@code pageSize} products ordered by id, filtered by the criteria the {@code filter} adds.
+     * Every page is a keyset query ({@code id > last id of the previous page}), so a late page costs as much as
+     * the first one. Pages are fetched lazily while iterating.
+     */
+    public static Iterable<List<Products>> productPages(ProductsMapper productsMapper, int pageSize,
+                                                        Consumer<ProductsExample.Criteria> filter) {
+        return () -> new Iterator<List<Products>>() {
+            private List<Products> page = fetch(null);
+
+            private List<Products> fetch(Long lastId) {
+                ProductsExample example = new ProductsExample();
+                ProductsExample.Criteria criteria = example.createCriteria();
+                filter.accept(criteria);
+                if (lastId != null) {
+                    criteria.andIdGreaterThan(lastId);
+                }
+                example.setOrderByClause("id");
+                example.setLimit(pageSize);
+                return productsMapper.selectByExample(example);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !page.isEmpty();
+            }
+
+            @Override
+            public List<Products> next() {
+                if (page.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                List<Products> current = page;
+                page = current.size() < pageSize
+                        ? new ArrayList<>()
+                        : fetch(current.get(current.size() - 1).getId());
+                return current;
+            }
+        };
+    }
+
+    /**
+     * Passes every matching product to the consumer while it is read, so memory use does not grow with the table.
+     * Postgres only honours the fetch size inside a transaction, hence the scan runs in its own non-autocommit session.
+     *
+     * @return the number of scanned products
+     */
+    @SneakyThrows
+    public static long scanProducts(ProductsExample example, Consumer<Products> consumer) {
+        try (SqlSession sqlSession = getSqlSessionFactory().openSession(false);
+             Cursor<Products> cursor = sqlSession.getMapper(ProductsMapper.class).selectByExampleWithCursor(example)) {
+            long count = 0;
+            for (Products product : cursor) {
+                consumer.accept(product);
+                count++;
+            }
+            return count;
+        }
+    }
+
+    public static long scanAllProducts(Consumer<Products> consumer) {
+        return scanProducts(new ProductsExample(), consumer);
+    }
 }
@@ -0,0 +1,55 @@
+package ru.slmax.utils;
+
+import lombok.experimental.UtilityClass;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executors for test scenarios and the OkHttp dispatcher. Virtual threads are looked up reflectively,
+ * so the project still compiles for Java 8 and only uses them when running on Java 21+
+ * with {@code execution.virtualThreads=true}.
+ */
+@UtilityClass
+public class ExecutorUtils {
+
+    private final MethodHandle newVirtualThreadPerTaskExecutor = findVirtualThreadPerTaskExecutor();
+
+    private MethodHandle findVirtualThreadPerTaskExecutor() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                    MethodType.methodType(ExecutorService.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    public boolean isVirtualThreadsSupported() {
+        return newVirtualThreadPerTaskExecutor != null;
+    }
+
+    public boolean isVirtualThreadsEnabled() {
+        return ConfigUtils.getBoolean("execution.virtualThreads", false);
+    }
+
+    public ExecutorService newVirtualThreadPerTaskExecutor() {
+        if (!isVirtualThreadsSupported()) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21+, running on " + System.getProperty("java.version"));
+        }
+        try {
+            return (ExecutorService) newVirtualThreadPerTaskExecutor.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot create a virtual thread executor", e);
+        }
+    }
+
+    /**
+     * A virtual thread per task when virtual threads are enabled, otherwise a fixed pool of platform threads.
+     */
+    public ExecutorService newScenarioExecutor(int platformThreads) {
+        return isVirtualThreadsEnabled() ? newVirtualThreadPerTaskExecutor() : Executors.newFixedThreadPool(platformThreads);
+    }
+}
@@ -0,0 +1,252 @@
+package ru.slmax.utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.LongConsumer;
+
+/**
+ * Set of non-negative {@code long} ids kept as a bitmap split into pages of {@value #PAGE_BITS} ids,
+ * so a dense range of a million ids takes about 128 KB and a membership check is one map lookup
+ * and one bit test. Pages are created on first use and dropped when they become empty.
+ * Not thread-safe.
+ */
+public class IdSet {
+    private static final int PAGE_SHIFT = 14;
+    private static final int PAGE_BITS = 1 << PAGE_SHIFT;
+    private static final int PAGE_WORDS = PAGE_BITS / Long.SIZE;
+
+    private final Map<Long, long[]> pages = new HashMap<>();
+    private long size;
+
+    public static IdSet of(long... ids) {
+        IdSet set = new IdSet();
+        for (long id : ids) {
+            set.add(id);
+        }
+        return set;
+    }
+
+    /**
+     * @return true if the id was not in the set
+     */
+    public boolean add(long id) {
+        long[] page = pages.computeIfAbsent(pageOf(id), key -> new long[PAGE_WORDS]);
+        int word = wordOf(id);
+        long bit = 1L << id;
+        if ((page[word] & bit) != 0) {
+            return false;
+        }
+        page[word] |= bit;
+        size++;
+        return true;
+    }
+
+    /**
+     * @return true if the id was in the set
+     */
+    public boolean remove(long id) {
+        long[] page = pages.get(pageOf(id));
+        int word = wordOf(id);
+        long bit = 1L << id;
+        if (page == null || (page[word] & bit) == 0) {
+            return false;
+        }
+        page[word] &= ~bit;
+        size--;
+        if (isEmpty(page)) {
+            pages.remove(pageOf(id));
+        }
+        return true;
+    }
+
+    public boolean contains(long id) {
+        if (id < 0) {
+            return false;
+        }
+        long[] page = pages.get(id >>> PAGE_SHIFT);
+        return page != null && (page[wordOf(id)] & 1L << id) != 0;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * The smallest id at or above {@code from} that is not in the set.
+     */
+    public long nextAbsent(long from) {
+        long id = Math.max(from, 0);
+        while (true) {
+            long[] page = pages.get(id >>> PAGE_SHIFT);
+            if (page == null) {
+                return id;
+            }
+            for (int word = wordOf(id); word < PAGE_WORDS; word++) {
+                long free = ~page[word] & -1L << id;
+                if (free != 0) {
+                    return (id & ~(long) (Long.SIZE - 1)) + Long.numberOfTrailingZeros(free);
+                }
+                id = (id | Long.SIZE - 1) + 1;
+            }
+        }
+    }
+
+    /**
+     * The ids of this set that are not in {@code other}.
+     */
+    public IdSet andNot(IdSet other) {
+        IdSet result = new IdSet();
+        for (Map.Entry<Long, long[]> entry : pages.entrySet()) {
+            long[] otherPage = other.pages.get(entry.getKey());
+            long[] page = entry.getValue().clone();
+            if (otherPage != null) {
+                for (int word = 0; word < PAGE_WORDS; word++) {
+                    page[word] &= ~otherPage[word];
+                }
+            }
+            result.putPage(entry.getKey(), page);
+        }
+        return result;
+    }
+
+    /**
+     * The ids that are both in this set and in {@code other}.
+     */
+    public IdSet and(IdSet other) {
+        IdSet result = new IdSet();
+        for (Map.Entry<Long, long[]> entry : pages.entrySet()) {
+            long[] otherPage = other.pages.get(entry.getKey());
+            if (otherPage != null) {
+                long[] page = entry.getValue().clone();
+                for (int word = 0; word < PAGE_WORDS; word++) {
+                    page[word] &= otherPage[word];
+                }
+                result.putPage(entry.getKey(), page);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Passes the ids to the consumer in ascending order.
+     */
+    public void forEach(LongConsumer consumer) {
+        PrimitiveIterator.OfLong ids = iterator();
+        while (ids.hasNext()) {
+            consumer.accept(ids.nextLong());
+        }
+    }
+
+    /**
+     * The ids in ascending order. The set must not change while it is iterated.
+     */
+    public PrimitiveIterator.OfLong iterator() {
+        long[] keys = sortedPageKeys();
+        return new PrimitiveIterator.OfLong() {
+            private int pageIndex = -1;
+            private long[] page;
+            private int word;
+            private long bits;
+
+            @Override
+            public boolean hasNext() {
+                while (bits == 0) {
+                    if (page != null && ++word < PAGE_WORDS) {
+                        bits = page[word];
+                    } else if (++pageIndex < keys.length) {
+                        page = pages.get(keys[pageIndex]);
+                        word = 0;
+                        bits = page[0];
+                    } else {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                long id = (keys[pageIndex] << PAGE_SHIFT) + (long) word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                return id;
+            }
+        };
+    }
+
+    public long[] toArray() {
+        long[] ids = new long[Math.toIntExact(size)];
+        PrimitiveIterator.OfLong iterator = iterator();
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = iterator.nextLong();
+        }
+        return ids;
+    }
+
+    /**
+     * Approximate heap taken by the bitmap pages.
+     */
+    public long estimatedBytes() {
+        return pages.size() * (16L + PAGE_WORDS * 8L + 48L);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("IdSet(size=").append(size).append(", ids=[");
+        PrimitiveIterator.OfLong ids = iterator();
+        for (int shown = 0; ids.hasNext() && shown < 20; shown++) {
+            text.append(shown == 0 ? "" : ", ").append(ids.nextLong());
+        }
+        return text.append(size > 20 ? ", ...])" : "])").toString();
+    }
+
+    private void putPage(long key, long[] page) {
+        long count = 0;
+        for (long word : page) {
+            count += Long.bitCount(word);
+        }
+        if (count > 0) {
+            pages.put(key, page);
+            size += count;
+        }
+    }
+
+    private long[] sortedPageKeys() {
+        long[] keys = new long[pages.size()];
+        int i = 0;
+        for (Long key : pages.keySet()) {
+            keys[i++] = key;
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    private static boolean isEmpty(long[] page) {
+        for (long word : page) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long pageOf(long id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Ids must not be negative: " + id);
+        }
+        return id >>> PAGE_SHIFT;
+    }
+
+    private static int wordOf(long id) {
+        return (int) (id >>> 6) & PAGE_WORDS - 1;
+    }
+}
@@ -0,0 +1,64 @@
+package ru.slmax.utils;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.SneakyThrows;
+import lombok.experimental.UtilityClass;
+import okhttp3.ResponseBody;
+import ru.slmax.dto.Product;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads the elements of a JSON array body one at a time straight from the network stream,
+ * so memory use does not depend on the size of the array. Smile and CBOR bodies are read the same way,
+ * the format is taken from the {@code Content-Type} of the body.
+ */
+@UtilityClass
+public class JsonStreamUtils {
+
+    /**
+     * Iterates the products of the body. Closing the iterator, or reading it to the end, closes the body.
+     */
+    @SneakyThrows
+    public MappingIterator<Product> readProducts(ResponseBody body) {
+        WireFormat format = WireFormat.of(body.contentType());
+        ObjectReader reader = format == WireFormat.JSON ? JsonUtils.productReader : format.mapper().readerFor(Product.class);
+        return reader.readValues(body.byteStream());
+    }
+
+    /**
+     * The products of the body as a sequential stream; close the stream to close the body.
+     */
+    public Stream<Product> streamProducts(ResponseBody body) {
+        MappingIterator<Product> products = readProducts(body);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(products, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> close(products));
+    }
+
+    /**
+     * Passes every product of the body to the consumer and closes the body.
+     *
+     * @return the number of products read
+     */
+    @SneakyThrows
+    public long forEachProduct(ResponseBody body, Consumer<Product> consumer) {
+        long count = 0;
+        try (MappingIterator<Product> products = readProducts(body)) {
+            while (products.hasNext()) {
+                consumer.accept(products.next());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @SneakyThrows
+    private void close(MappingIterator<?> iterator) {
+        iterator.close();
+    }
+}
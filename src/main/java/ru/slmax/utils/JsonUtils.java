@@ -0,0 +1,53 @@
+package ru.slmax.utils;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.cfg.MapperBuilder;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import lombok.experimental.UtilityClass;
+import ru.slmax.dto.Category;
+import ru.slmax.dto.Product;
+
+/**
+ * The one {@link ObjectMapper} of the project, shared by the Retrofit converter, {@link PrettyLogger}
+ * and {@link JsonStreamUtils}. Bean access goes through generated code: Blackbird on Java 11+,
+ * Afterburner before that. Unknown properties still fail, they are a contract change of the API.
+ * The Smile and CBOR mappers are configured the same way, see {@link WireFormat}.
+ */
+@UtilityClass
+public class JsonUtils {
+
+    public final ObjectMapper mapper = configure(JsonMapper.builder());
+
+    public final ObjectMapper smileMapper = configure(SmileMapper.builder());
+
+    public final ObjectMapper cborMapper = configure(CBORMapper.builder());
+
+    public final ObjectReader productReader = mapper.readerFor(Product.class);
+    public final ObjectWriter productWriter = mapper.writerFor(Product.class);
+
+    public final ObjectReader categoryReader = mapper.readerFor(Category.class);
+    public final ObjectWriter categoryWriter = mapper.writerFor(Category.class);
+
+    private ObjectMapper configure(MapperBuilder<?, ?> builder) {
+        return builder
+                .addModule(accessorModule())
+                .disable(MapperFeature.USE_GETTERS_AS_SETTERS)
+                .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+                .build();
+    }
+
+    private Module accessorModule() {
+        String specification = System.getProperty("java.specification.version");
+        boolean java11 = !specification.startsWith("1.") && Integer.parseInt(specification) >= 11;
+        return java11 ? new BlackbirdModule() : new AfterburnerModule();
+    }
+}
@@ -1,27 +1,78 @@
 package ru.slmax.utils;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import okhttp3.OkHttpClient;
 import okhttp3.internal.platform.Platform;
 import okhttp3.logging.HttpLoggingInterceptor;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Logs HTTP lines through the OkHttp platform logger and pretty-prints JSON bodies.
+ * <ul>
+ *     <li>nothing is formatted when INFO is off for the {@code okhttp3.OkHttpClient} logger;</li>
+ *     <li>JSON is copied token by token from parser to generator, no tree is built;</li>
+ *     <li>bodies longer than {@code logger.maxBodyChars} are logged as is and cut;</li>
+ *     <li>with {@code logger.sampleRate=N} only every N-th JSON body is pretty-printed.</li>
+ * </ul>
+ */
 public class PrettyLogger implements HttpLoggingInterceptor.Logger {
-    ObjectMapper mapper = new ObjectMapper();
+    static final ObjectWriter prettyWriter = JsonUtils.mapper.writerWithDefaultPrettyPrinter();
+    static final Logger platformLogger = Logger.getLogger(OkHttpClient.class.getName());
+
+    private static final ThreadLocal<StringWriter> buffers = ThreadLocal.withInitial(StringWriter::new);
+    private static final AtomicLong jsonBodies = new AtomicLong();
+
+    private final int maxBodyChars = ConfigUtils.getInt("logger.maxBodyChars", 64 * 1024);
+    private final int sampleRate = Math.max(1, ConfigUtils.getInt("logger.sampleRate", 1));
 
     @Override
     public void log(String message) {
-        String trimmedMessage = message.trim();
-        if ((trimmedMessage.startsWith("{") && trimmedMessage.endsWith("}"))
-                || (trimmedMessage.startsWith("[") && trimmedMessage.endsWith("]"))) {
+        if (!platformLogger.isLoggable(Level.INFO)) {
+            return;
+        }
+        if (message.length() > maxBodyChars) {
+            Platform.get().log(Platform.INFO, message.substring(0, maxBodyChars)
+                    + "... (" + (message.length() - maxBodyChars) + " more chars)", null);
+        } else if (isJson(message) && jsonBodies.getAndIncrement() % sampleRate == 0) {
             try {
-                Object value = mapper.readValue(message, Object.class);
-                String prettyJson = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(value);
-                Platform.get().log(Platform.INFO, prettyJson, null);
-            } catch (JsonProcessingException e) {
+                Platform.get().log(Platform.INFO, prettyPrint(message), null);
+            } catch (IOException e) {
                 Platform.get().log(Platform.WARN, message, e);
             }
         } else {
             Platform.get().log(Platform.INFO, message, null);
         }
     }
+
+    private static String prettyPrint(String json) throws IOException {
+        StringWriter buffer = buffers.get();
+        buffer.getBuffer().setLength(0);
+        try (JsonParser parser = JsonUtils.mapper.getFactory().createParser(json);
+             JsonGenerator generator = prettyWriter.createGenerator(buffer)) {
+            while (parser.nextToken() != null) {
+                generator.copyCurrentStructure(parser);
+            }
+        }
+        return buffer.toString();
+    }
+
+    private static boolean isJson(String message) {
+        int first = 0;
+        int last = message.length() - 1;
+        while (first <= last && Character.isWhitespace(message.charAt(first))) first++;
+        while (last > first && Character.isWhitespace(message.charAt(last))) last--;
+        if (first >= last) {
+            return false;
+        }
+        char open = message.charAt(first);
+        char close = message.charAt(last);
+        return (open == '{' && close == '}') || (open == '[' && close == ']');
+    }
 }
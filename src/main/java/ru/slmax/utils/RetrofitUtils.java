@@ -1,28 +1,180 @@
 package ru.slmax.utils;
 
 import lombok.experimental.UtilityClass;
+import okhttp3.Cache;
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
+import okhttp3.Request;
 import okhttp3.logging.HttpLoggingInterceptor;
 import retrofit2.Retrofit;
-import retrofit2.converter.jackson.JacksonConverterFactory;
+import ru.slmax.cache.ResponseCache;
+import ru.slmax.cache.ResponseCacheInterceptor;
+import ru.slmax.metrics.HttpMetrics;
+import ru.slmax.metrics.HttpMetricsInterceptor;
 
+import java.io.File;
 import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * One {@link OkHttpClient} (connection pool and dispatcher included) is shared by the whole process,
+ * and one {@link Retrofit} is built per base URL on top of it. Settings come from {@link ConfigUtils}.
+ */
 @UtilityClass
 public class RetrofitUtils {
 
-    HttpLoggingInterceptor logging = new HttpLoggingInterceptor();
+    private final HttpLoggingInterceptor.Logger httpLogger = buildHttpLogger();
 
-    public Retrofit getRetrofit(){
-        OkHttpClient client = new OkHttpClient.Builder()
-                .connectTimeout(Duration.ofMinutes(1L))
-                .addInterceptor(logging.setLevel(HttpLoggingInterceptor.Level.BASIC))
-                .build();
+    private final HttpMetrics httpMetrics = new HttpMetrics();
 
-        return new Retrofit.Builder()
-                .client(client)
-                .baseUrl("http://80.78.248.82:8189/market/api/v1/")
-                .addConverterFactory(JacksonConverterFactory.create())
-                .build();
+    private final ConcurrentMap<String, Retrofit> retrofits = new ConcurrentHashMap<>();
+
+    private final WireFormat wireFormat = WireFormat.configured();
+
+    private final ResponseCache responseCache = new ResponseCache(
+            ConfigUtils.getLong("http.cache.ttlMs", 30_000L), TimeUnit.MILLISECONDS,
+            ConfigUtils.getInt("http.cache.maxEntries", 1024),
+            ConfigUtils.getLong("http.cache.maxBytes", 16L << 20));
+
+    public String getBaseUrl() {
+        return ConfigUtils.getProperty("market.baseUrl", "http://80.78.248.82:8189/market/api/v1/");
+    }
+
+    public Retrofit getRetrofit() {
+        return getRetrofit(getBaseUrl());
+    }
+
+    /**
+     * Services may return {@code Call<T>} or {@code CompletableFuture<Response<T>>}:
+     * Retrofit registers its CompletableFuture call adapter by default on Java 8+.
+     */
+    public Retrofit getRetrofit(String baseUrl) {
+        return retrofits.computeIfAbsent(baseUrl, url -> new Retrofit.Builder()
+                .callFactory(RetrofitUtils::newCall)
+                .baseUrl(url)
+                .addConverterFactory(new WireFormatConverterFactory(wireFormat))
+                .build());
+    }
+
+    /**
+     * The body format of {@code http.format}; responses in another format are still read by their Content-Type.
+     */
+    public WireFormat getWireFormat() {
+        return wireFormat;
+    }
+
+    /**
+     * The in-memory GET cache; it is consulted only when {@code http.cache.enabled=true}.
+     */
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Per-route latencies, sizes and status codes of the calls made through {@link #getClient()}.
+     */
+    public HttpMetrics getHttpMetrics() {
+        return httpMetrics;
+    }
+
+    /**
+     * The logger of the HTTP logging interceptor: {@link PrettyLogger}, wrapped in an {@link AsyncLogger}
+     * when {@code http.logging.async=true}.
+     */
+    public HttpLoggingInterceptor.Logger getHttpLogger() {
+        return httpLogger;
+    }
+
+    private HttpLoggingInterceptor.Logger buildHttpLogger() {
+        PrettyLogger prettyLogger = new PrettyLogger();
+        if (!ConfigUtils.getBoolean("http.logging.async", false)) {
+            return prettyLogger;
+        }
+        AsyncLogger asyncLogger = new AsyncLogger(prettyLogger,
+                ConfigUtils.getInt("http.logging.queueSize", 8192),
+                AsyncLogger.OverflowPolicy.valueOf(ConfigUtils.getProperty("http.logging.overflow", "DROP")));
+        // the writer is a daemon thread: write out the queued lines before the JVM exits
+        Runtime.getRuntime().addShutdownHook(new Thread(asyncLogger::close, "async-http-logger-close"));
+        return asyncLogger;
+    }
+
+    /**
+     * A call of {@link #getClient()}, tagged with the {@link HttpMetrics#currentScope() metrics scope}
+     * of the calling thread; Retrofit creates the call on that thread for async calls too.
+     */
+    private Call newCall(Request request) {
+        HttpMetrics scope = HttpMetrics.currentScope();
+        return getClient().newCall(scope == null ? request : request.newBuilder().tag(HttpMetrics.class, scope).build());
+    }
+
+    public OkHttpClient getClient() {
+        return ClientHolder.CLIENT;
+    }
+
+    private OkHttpClient buildClient() {
+        Dispatcher dispatcher = ExecutorUtils.isVirtualThreadsEnabled()
+                ? new Dispatcher(ExecutorUtils.newVirtualThreadPerTaskExecutor())
+                : new Dispatcher();
+        dispatcher.setMaxRequests(ConfigUtils.getInt("http.dispatcher.maxRequests", 64));
+        dispatcher.setMaxRequestsPerHost(ConfigUtils.getInt("http.dispatcher.maxRequestsPerHost", 5));
+
+        ConnectionPool connectionPool = new ConnectionPool(
+                ConfigUtils.getInt("http.pool.maxIdleConnections", 5),
+                ConfigUtils.getLong("http.pool.keepAliveMs", TimeUnit.MINUTES.toMillis(5L)),
+                TimeUnit.MILLISECONDS);
+
+        HttpLoggingInterceptor.Level level = HttpLoggingInterceptor.Level.valueOf(
+                ConfigUtils.getProperty("http.logging.level", "BASIC"));
+
+        OkHttpClient.Builder builder = new OkHttpClient.Builder();
+        if (wireFormat != WireFormat.JSON) {
+            // ahead of the response cache, which keys its entries by the negotiated format
+            String accept = wireFormat.accept();
+            builder.addInterceptor(chain -> chain.request().header("Accept") != null
+                    ? chain.proceed(chain.request())
+                    : chain.proceed(chain.request().newBuilder().header("Accept", accept).build()));
+        }
+        if (ConfigUtils.getBoolean("http.cache.enabled", false)) {
+            // categories embed their products, so a product change must drop cached categories too
+            builder.addInterceptor(new ResponseCacheInterceptor(responseCache,
+                    ConfigUtils.getLong("http.cache.maxEntryBytes", 1L << 20),
+                    Collections.singletonMap("products", Collections.singletonList("categories"))));
+            String cacheDir = ConfigUtils.getProperty("http.cache.dir", "");
+            if (!cacheDir.isEmpty()) {
+                builder.cache(new Cache(new File(cacheDir), ConfigUtils.getLong("http.cache.dirMaxBytes", 50L << 20)));
+            }
+        }
+        builder.dispatcher(dispatcher)
+                .connectionPool(connectionPool)
+                .connectTimeout(Duration.ofMillis(ConfigUtils.getLong("http.connectTimeoutMs", Duration.ofMinutes(1L).toMillis())))
+                .readTimeout(Duration.ofMillis(ConfigUtils.getLong("http.readTimeoutMs", 10_000L)))
+                .writeTimeout(Duration.ofMillis(ConfigUtils.getLong("http.writeTimeoutMs", 10_000L)))
+                .callTimeout(Duration.ofMillis(ConfigUtils.getLong("http.callTimeoutMs", 0L)))
+                .addInterceptor(new HttpLoggingInterceptor(httpLogger).setLevel(level));
+        if (DbUtils.isSecondLevelCacheEnabled(DbUtils.environment)) {
+            // the API writes to the tables behind the MyBatis caches
+            builder.addInterceptor(chain -> {
+                try {
+                    return chain.proceed(chain.request());
+                } finally {
+                    if (!"GET".equals(chain.request().method())) {
+                        DbUtils.clearSecondLevelCaches();
+                    }
+                }
+            });
+        }
+        if (ConfigUtils.getBoolean("http.metrics.enabled", true)) {
+            builder.addNetworkInterceptor(new HttpMetricsInterceptor(httpMetrics));
+        }
+        return builder.build();
+    }
+
+    private static class ClientHolder {
+        static final OkHttpClient CLIENT = buildClient();
     }
 }
@@ -0,0 +1,59 @@
+package ru.slmax.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.MediaType;
+
+/**
+ * Body formats the Retrofit converter speaks. All of them map the same DTOs; Smile and CBOR are
+ * binary encodings of the JSON data model that parse noticeably faster, meant for the local stub
+ * server and traffic replay rather than the real API.
+ */
+public enum WireFormat {
+    JSON("application/json", JsonUtils.mapper),
+    SMILE("application/x-jackson-smile", JsonUtils.smileMapper),
+    CBOR("application/cbor", JsonUtils.cborMapper);
+
+    private final MediaType mediaType;
+    private final ObjectMapper mapper;
+
+    WireFormat(String mediaType, ObjectMapper mapper) {
+        this.mediaType = MediaType.get(mediaType);
+        this.mapper = mapper;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    public ObjectMapper mapper() {
+        return mapper;
+    }
+
+    /**
+     * The value of the {@code Accept} header: this format first, JSON as the fallback.
+     */
+    public String accept() {
+        return this == JSON ? JSON.mediaType.toString() : mediaType + ", " + JSON.mediaType + ";q=0.5";
+    }
+
+    /**
+     * The format of a body by its {@code Content-Type}; JSON when the type is missing or unknown.
+     */
+    public static WireFormat of(MediaType contentType) {
+        if (contentType != null) {
+            for (WireFormat format : values()) {
+                if (format.mediaType.type().equals(contentType.type()) && format.mediaType.subtype().equals(contentType.subtype())) {
+                    return format;
+                }
+            }
+        }
+        return JSON;
+    }
+
+    /**
+     * The format set by {@code http.format}.
+     */
+    public static WireFormat configured() {
+        return valueOf(ConfigUtils.getProperty("http.format", "JSON").toUpperCase());
+    }
+}
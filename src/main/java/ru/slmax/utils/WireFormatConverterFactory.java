@@ -0,0 +1,78 @@
+package ru.slmax.utils;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+import ru.slmax.dto.Category;
+import ru.slmax.dto.Product;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Jackson converter negotiated by {@code Content-Type}: request bodies are written in one fixed
+ * {@link WireFormat}, response bodies are read in the format their {@code Content-Type} names,
+ * so a server that answers JSON to a Smile client still works. JSON readers and writers of
+ * {@link Product} and {@link Category} are the ones cached in {@link JsonUtils}.
+ */
+public class WireFormatConverterFactory extends Converter.Factory {
+    private final WireFormat requestFormat;
+
+    public WireFormatConverterFactory(WireFormat requestFormat) {
+        this.requestFormat = requestFormat;
+    }
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+        JavaType javaType = JsonUtils.mapper.constructType(type);
+        WireFormat[] formats = WireFormat.values();
+        ObjectReader[] readers = new ObjectReader[formats.length];
+        for (WireFormat format : formats) {
+            readers[format.ordinal()] = reader(format, javaType);
+        }
+        return body -> {
+            try {
+                return readers[WireFormat.of(body.contentType()).ordinal()].readValue(body.byteStream());
+            } finally {
+                body.close();
+            }
+        };
+    }
+
+    @Override
+    public Converter<?, RequestBody> requestBodyConverter(Type type, Annotation[] parameterAnnotations,
+                                                          Annotation[] methodAnnotations, Retrofit retrofit) {
+        ObjectWriter writer = writer(requestFormat, requestFormat.mapper().constructType(type));
+        MediaType mediaType = requestFormat.mediaType();
+        return value -> RequestBody.create(mediaType, writer.writeValueAsBytes(value));
+    }
+
+    private static ObjectReader reader(WireFormat format, JavaType type) {
+        if (format == WireFormat.JSON) {
+            if (type.hasRawClass(Product.class)) {
+                return JsonUtils.productReader;
+            }
+            if (type.hasRawClass(Category.class)) {
+                return JsonUtils.categoryReader;
+            }
+        }
+        return format.mapper().readerFor(type);
+    }
+
+    private static ObjectWriter writer(WireFormat format, JavaType type) {
+        if (format == WireFormat.JSON) {
+            if (type.hasRawClass(Product.class)) {
+                return JsonUtils.productWriter;
+            }
+            if (type.hasRawClass(Category.class)) {
+                return JsonUtils.categoryWriter;
+            }
+        }
+        return format.mapper().writerFor(type);
+    }
+}
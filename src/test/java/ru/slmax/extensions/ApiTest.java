@@ -0,0 +1,19 @@
+package ru.slmax.extensions;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * A test class that calls the API and checks the database: gives every test its own thread session,
+ * attaches the HTTP metrics of every test and provides {@link TestData}. Tests of such a class can run
+ * in parallel; the state they share is listed in {@link SharedResources}.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@ExtendWith({DbSessionExtension.class, HttpMetricsExtension.class, TestDataExtension.class})
+public @interface ApiTest {
+}
@@ -0,0 +1,29 @@
+package ru.slmax.extensions;
+
+import org.junit.jupiter.api.extension.AfterAllCallback;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import ru.slmax.utils.DbUtils;
+
+/**
+ * Opens a {@link DbUtils} thread session before every test, so all mapper calls of the test reuse one
+ * session and connection, and closes it after the test and after the class, returning the connection to the pool.
+ */
+public class DbSessionExtension implements BeforeEachCallback, AfterEachCallback, AfterAllCallback {
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        DbUtils.getThreadSession();
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        DbUtils.closeThreadSession();
+    }
+
+    @Override
+    public void afterAll(ExtensionContext context) {
+        DbUtils.closeThreadSession();
+    }
+}
@@ -0,0 +1,30 @@
+package ru.slmax.extensions;
+
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import ru.slmax.metrics.HttpMetrics;
+import ru.slmax.utils.RetrofitUtils;
+
+/**
+ * Attaches the per-route HTTP metrics of the calls made during a test, its {@code @BeforeEach}
+ * and {@code @AfterEach} methods included, to the Allure report of the test. The metrics are a
+ * {@link HttpMetrics#openScope() scope} of the test thread, so tests running in parallel are not counted.
+ */
+public class HttpMetricsExtension implements BeforeEachCallback, AfterEachCallback {
+    private static final ExtensionContext.Namespace namespace = ExtensionContext.Namespace.create(HttpMetricsExtension.class);
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        context.getStore(namespace).put(HttpMetrics.class, RetrofitUtils.getHttpMetrics().openScope());
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        HttpMetrics.closeScope();
+        HttpMetrics metrics = context.getStore(namespace).remove(HttpMetrics.class, HttpMetrics.class);
+        if (metrics != null) {
+            metrics.attachToAllure("HTTP metrics");
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package ru.slmax.extensions;
+
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+/**
+ * Process-wide state that tests running in parallel share, as {@link ResourceLock} keys.
+ * API tests use both in {@code READ} mode: they only add to them and do not depend on what other tests do.
+ * A test that asserts on them, e.g. on the totals of the HTTP metrics or on second-level cache hits,
+ * locks them in {@code READ_WRITE} mode and so runs alone with respect to the other tests.
+ */
+public final class SharedResources {
+    /** {@link ru.slmax.utils.RetrofitUtils#getHttpMetrics()}, recorded by every API call */
+    public static final String HTTP_METRICS = "ru.slmax.httpMetrics";
+    /** the MyBatis second-level caches, cleared after every API call that is not a GET */
+    public static final String SECOND_LEVEL_CACHE = "ru.slmax.secondLevelCache";
+
+    private SharedResources() {
+    }
+}
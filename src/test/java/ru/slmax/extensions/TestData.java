@@ -0,0 +1,59 @@
+package ru.slmax.extensions;
+
+import lombok.Getter;
+import okhttp3.ResponseBody;
+import ru.slmax.db.model.ProductsExample;
+import ru.slmax.dto.Product;
+import ru.slmax.reconcile.ProductReconciler;
+import ru.slmax.reconcile.ReconciliationReport;
+import ru.slmax.utils.DbUtils;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixture data of one test. Every product the test creates gets a title starting with {@link #getPrefix()},
+ * which is unique per run ({@code -Dtest.runId}, random by default) and per test, so counts and cleanup
+ * see only the rows of this test while other tests and other agents work on the same tables.
+ * Provided by {@link TestDataExtension}.
+ */
+@Getter
+public class TestData {
+    private static final String runId = System.getProperty("test.runId", UUID.randomUUID().toString().substring(0, 8));
+    private static final AtomicInteger tests = new AtomicInteger();
+
+    private final String prefix = "t" + runId + "-" + tests.incrementAndGet() + " ";
+
+    /**
+     * The title with the prefix of this test.
+     */
+    public String title(String title) {
+        return prefix + title;
+    }
+
+    public boolean owns(Product product) {
+        return product.getTitle() != null && product.getTitle().startsWith(prefix);
+    }
+
+    /**
+     * Selects the products of this test.
+     */
+    public ProductsExample products() {
+        return DbUtils.productsByTitlePrefix(prefix);
+    }
+
+    /**
+     * Reconciles the products of this test in the database with those in the catalog body.
+     */
+    public ReconciliationReport reconcile(ResponseBody catalog) {
+        return new ProductReconciler().reconcile(products(), this::owns, catalog);
+    }
+
+    public Integer countProducts() {
+        return DbUtils.countProductsByTitlePrefix(DbUtils.getProductMapper(), prefix);
+    }
+
+    void cleanUp() {
+        DbUtils.deleteProductsByTitlePrefix(DbUtils.getProductMapper(), prefix);
+    }
+}
@@ -0,0 +1,37 @@
+package ru.slmax.extensions;
+
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.api.extension.ParameterResolver;
+
+/**
+ * Gives every test its own {@link TestData}, injected as a parameter of the test or of its
+ * {@code @BeforeEach} methods, and deletes the products of the test after it.
+ * Register it after {@link DbSessionExtension}, so the cleanup runs before the session is closed.
+ */
+public class TestDataExtension implements ParameterResolver, AfterEachCallback {
+    private static final ExtensionContext.Namespace namespace = ExtensionContext.Namespace.create(TestDataExtension.class);
+
+    @Override
+    public boolean supportsParameter(ParameterContext parameterContext, ExtensionContext extensionContext) {
+        return parameterContext.getParameter().getType() == TestData.class;
+    }
+
+    @Override
+    public Object resolveParameter(ParameterContext parameterContext, ExtensionContext extensionContext) {
+        return testData(extensionContext);
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        TestData testData = context.getStore(namespace).remove(TestData.class, TestData.class);
+        if (testData != null) {
+            testData.cleanUp();
+        }
+    }
+
+    private TestData testData(ExtensionContext context) {
+        return context.getStore(namespace).getOrComputeIfAbsent(TestData.class, key -> new TestData(), TestData.class);
+    }
+}
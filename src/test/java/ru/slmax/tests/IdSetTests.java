@@ -0,0 +1,113 @@
+package ru.slmax.tests;
+
+import org.junit.jupiter.api.Test;
+import ru.slmax.utils.IdSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * {@link IdSet} against a {@link TreeSet} of the same ids, around the edges of words (64 ids)
+ * and pages (16384 ids) and across large gaps between pages.
+ */
+public class IdSetTests {
+    static final long PAGE = 1 << 14;
+    static final long[] edges = {0, 1, 63, 64, 65, 4095, 4096, PAGE - 1, PAGE, PAGE + 1, 2 * PAGE - 1,
+            5 * PAGE, 1L << 40, (1L << 40) + 63, Long.MAX_VALUE - 1, Long.MAX_VALUE};
+
+    @Test
+    void addRemoveContainsTest() {
+        IdSet ids = new IdSet();
+        TreeSet<Long> expected = new TreeSet<>();
+        for (long id : edges) {
+            assertThat("add " + id, ids.add(id), equalTo(expected.add(id)));
+            assertThat("add again " + id, ids.add(id), equalTo(expected.add(id)));
+        }
+        assertSame(expected, ids);
+        for (long id : new long[]{0, PAGE, 4096, 1L << 40, 12345}) {
+            assertThat("remove " + id, ids.remove(id), equalTo(expected.remove(id)));
+            assertSame(expected, ids);
+        }
+        for (long id : new long[]{-1, 2, 62, PAGE - 2, 3 * PAGE, (1L << 40) + 1}) {
+            assertThat("contains " + id, ids.contains(id), equalTo(false));
+        }
+    }
+
+    @Test
+    void emptyPagesAreDroppedTest() {
+        IdSet ids = IdSet.of(PAGE - 1, PAGE, PAGE + 1);
+        long twoPages = ids.estimatedBytes();
+        ids.remove(PAGE);
+        ids.remove(PAGE + 1);
+        assertThat(ids.estimatedBytes() < twoPages, equalTo(true));
+        assertThat(ids.toArray(), equalTo(new long[]{PAGE - 1}));
+        ids.remove(PAGE - 1);
+        assertThat(ids.isEmpty(), equalTo(true));
+        assertThat(ids.estimatedBytes(), equalTo(0L));
+    }
+
+    @Test
+    void nextAbsentTest() {
+        IdSet ids = new IdSet();
+        for (long id = 0; id < PAGE + 70; id++) {
+            ids.add(id);
+        }
+        assertThat(ids.nextAbsent(0), equalTo(PAGE + 70));
+        assertThat(ids.nextAbsent(-5), equalTo(PAGE + 70));
+        ids.remove(63);
+        ids.remove(PAGE);
+        assertThat(ids.nextAbsent(0), equalTo(63L));
+        assertThat(ids.nextAbsent(64), equalTo(PAGE));
+        assertThat(ids.nextAbsent(PAGE + 1), equalTo(PAGE + 70));
+        assertThat(ids.nextAbsent(5 * PAGE), equalTo(5 * PAGE));
+    }
+
+    @Test
+    void andAndNotTest() {
+        Random random = new Random(23);
+        IdSet left = new IdSet();
+        IdSet right = new IdSet();
+        TreeSet<Long> leftExpected = new TreeSet<>();
+        TreeSet<Long> rightExpected = new TreeSet<>();
+        for (int i = 0; i < 5000; i++) {
+            // dense around the first pages, sparse far away, so whole pages exist on one side only
+            long id = i % 10 == 0 ? random.nextInt(1 << 30) : random.nextInt((int) (3 * PAGE));
+            if (random.nextBoolean()) {
+                left.add(id);
+                leftExpected.add(id);
+            } else {
+                right.add(id);
+                rightExpected.add(id);
+            }
+        }
+        for (long id : edges) {
+            left.add(id);
+            leftExpected.add(id);
+            right.add(id);
+            rightExpected.add(id);
+        }
+
+        TreeSet<Long> both = new TreeSet<>(leftExpected);
+        both.retainAll(rightExpected);
+        assertSame(both, left.and(right));
+        TreeSet<Long> leftOnly = new TreeSet<>(leftExpected);
+        leftOnly.removeAll(rightExpected);
+        assertSame(leftOnly, left.andNot(right));
+        assertSame(new TreeSet<>(), left.andNot(left));
+    }
+
+    private static void assertSame(TreeSet<Long> expected, IdSet actual) {
+        assertThat(actual.size(), equalTo((long) expected.size()));
+        List<Long> iterated = new ArrayList<>();
+        actual.forEach(iterated::add);
+        assertThat(iterated, equalTo(new ArrayList<>(expected)));
+        for (long id : expected) {
+            assertThat("contains " + id, actual.contains(id), equalTo(true));
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package ru.slmax.tests;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import ru.slmax.reconcile.Difference;
+import ru.slmax.reconcile.ProductReconciler;
+import ru.slmax.reconcile.ProductRow;
+import ru.slmax.reconcile.ReconciliationReport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * {@link ProductReconciler} on rows fed by {@link ProductReconciler.RowSource} lambdas, checked against
+ * a plain map diff of the same rows. The rows span about 60 buckets, so ordered sides release buckets
+ * while they are read and out-of-order rows end up among the late ones.
+ */
+public class ProductReconcilerTests {
+    static final ProductReconciler reconciler = new ProductReconciler(ForkJoinPool.commonPool(), null);
+
+    enum Order {
+        ORDERED(rows -> rows),
+        SHUFFLED(rows -> {
+            List<ProductRow> shuffled = new ArrayList<>(rows);
+            Collections.shuffle(shuffled, new Random(24));
+            return shuffled;
+        }),
+        // every pair of neighbours swapped: out of order by one row only
+        SWAPPED(rows -> {
+            List<ProductRow> swapped = new ArrayList<>(rows);
+            for (int i = 0; i + 1 < swapped.size(); i += 2) {
+                Collections.swap(swapped, i, i + 1);
+            }
+            return swapped;
+        });
+
+        final Function<List<ProductRow>, List<ProductRow>> apply;
+
+        Order(Function<List<ProductRow>, List<ProductRow>> apply) {
+            this.apply = apply;
+        }
+    }
+
+    static Stream<Arguments> orders() {
+        List<Arguments> orders = new ArrayList<>();
+        for (Order db : Order.values()) {
+            for (Order api : Order.values()) {
+                orders.add(Arguments.of(db, api));
+            }
+        }
+        return orders.stream();
+    }
+
+    @ParameterizedTest(name = "database {0}, API {1}")
+    @MethodSource("orders")
+    void sameResultInAnyOrderTest(Order dbOrder, Order apiOrder) {
+        List<ProductRow> db = new ArrayList<>();
+        List<ProductRow> api = new ArrayList<>();
+        rows(db, api);
+
+        ReconciliationReport report = reconciler.reconcile(source(dbOrder.apply.apply(db)), source(apiOrder.apply.apply(api)));
+
+        assertThat(report.getDbRows(), equalTo((long) db.size()));
+        assertThat(report.getApiRows(), equalTo((long) api.size()));
+        assertThat(report.getMatched(), equalTo(expectedMatched(db, api)));
+        assertThat(kinds(report), equalTo(expectedKinds(db, api)));
+    }
+
+    @Test
+    void swappedSidesTest() {
+        List<ProductRow> db = new ArrayList<>();
+        List<ProductRow> api = new ArrayList<>();
+        rows(db, api);
+
+        ReconciliationReport report = reconciler.reconcile(source(db), source(api));
+        ReconciliationReport swapped = reconciler.reconcile(source(api), source(db));
+
+        assertThat(swapped.getMatched(), equalTo(report.getMatched()));
+        Map<Long, Difference.Kind> mirrored = new TreeMap<>();
+        kinds(report).forEach((id, kind) -> mirrored.put(id, mirror(kind)));
+        assertThat(kinds(swapped), equalTo(mirrored));
+    }
+
+    @Test
+    void fasterSideWaitsTest() {
+        List<ProductRow> db = new ArrayList<>();
+        for (long id = 0; id < 200 * 4096; id += 1024) {
+            db.add(new ProductRow(id, "Product " + id, 100, "Food"));
+        }
+        AtomicLong apiRead = new AtomicLong();
+        ProductReconciler.RowSource api = sink -> {
+            for (ProductRow row : db) {
+                sink.accept(row);
+                apiRead.incrementAndGet();
+            }
+        };
+        AtomicLong apiReadAhead = new AtomicLong();
+        ProductReconciler.RowSource slowDb = sink -> {
+            // let the API reader run ahead until it stops
+            long read;
+            do {
+                read = apiRead.get();
+                Thread.sleep(200);
+            } while (read != apiRead.get());
+            apiReadAhead.set(read);
+            source(db).forEach(sink);
+        };
+
+        ReconciliationReport report = reconciler.reconcile(slowDb, api);
+
+        assertThat(report.toString(), report.getMatched(), equalTo((long) db.size()));
+        assertThat(apiReadAhead.get(), lessThan(db.size() / 2L));
+    }
+
+    /**
+     * Every 13th id is only in the database, every 17th only in the API, every 11th has another price
+     * in the API, and one API row comes twice.
+     */
+    private static void rows(List<ProductRow> db, List<ProductRow> api) {
+        for (long id = 1; id <= 2500; id++) {
+            long spread = id * 97;
+            ProductRow row = new ProductRow(spread, "Product " + id, (int) (100 + id % 50), id % 3 == 0 ? null : "Food");
+            if (id % 17 != 0) {
+                db.add(row);
+            }
+            if (id % 13 != 0) {
+                api.add(id % 11 == 0 ? new ProductRow(spread, row.getTitle(), row.getPrice() + 1, row.getCategoryTitle()) : row);
+            }
+        }
+        api.add(api.get(api.size() / 2));
+    }
+
+    private static ProductReconciler.RowSource source(List<ProductRow> rows) {
+        return sink -> rows.forEach(sink);
+    }
+
+    private static long expectedMatched(List<ProductRow> db, List<ProductRow> api) {
+        Map<Long, ProductRow> apiById = new HashMap<>();
+        api.forEach(row -> apiById.putIfAbsent(row.getId(), row));
+        return db.stream().filter(row -> row.equals(apiById.get(row.getId()))).count();
+    }
+
+    private static Map<Long, Difference.Kind> expectedKinds(List<ProductRow> db, List<ProductRow> api) {
+        Map<Long, ProductRow> dbById = new HashMap<>();
+        db.forEach(row -> dbById.put(row.getId(), row));
+        Map<Long, ProductRow> apiById = new HashMap<>();
+        Map<Long, Difference.Kind> kinds = new TreeMap<>();
+        for (ProductRow row : api) {
+            if (apiById.putIfAbsent(row.getId(), row) != null) {
+                kinds.put(-row.getId(), Difference.Kind.DUPLICATE_IN_API);
+            }
+        }
+        dbById.forEach((id, row) -> {
+            ProductRow apiRow = apiById.get(id);
+            if (apiRow == null) {
+                kinds.put(id, Difference.Kind.MISSING_IN_API);
+            } else if (!apiRow.equals(row)) {
+                kinds.put(id, Difference.Kind.MISMATCH);
+            }
+        });
+        apiById.keySet().stream().filter(id -> !dbById.containsKey(id))
+                .forEach(id -> kinds.put(id, Difference.Kind.EXTRA_IN_API));
+        return kinds;
+    }
+
+    /**
+     * Kinds of the differences by id; duplicates under the negated id, next to the difference of the row itself.
+     */
+    private static Map<Long, Difference.Kind> kinds(ReconciliationReport report) {
+        Map<Long, Difference.Kind> kinds = new TreeMap<>();
+        for (Difference difference : report.getDifferences()) {
+            boolean duplicate = difference.getKind() == Difference.Kind.DUPLICATE_IN_API
+                    || difference.getKind() == Difference.Kind.DUPLICATE_IN_DB;
+            Difference.Kind previous = kinds.put(duplicate ? -difference.getId() : difference.getId(), difference.getKind());
+            assertThat("two differences for id " + difference.getId(), previous, equalTo(null));
+        }
+        return kinds;
+    }
+
+    private static Difference.Kind mirror(Difference.Kind kind) {
+        switch (kind) {
+            case MISSING_IN_API:
+                return Difference.Kind.EXTRA_IN_API;
+            case EXTRA_IN_API:
+                return Difference.Kind.MISSING_IN_API;
+            case DUPLICATE_IN_API:
+                return Difference.Kind.DUPLICATE_IN_DB;
+            case DUPLICATE_IN_DB:
+                return Difference.Kind.DUPLICATE_IN_API;
+            default:
+                return kind;
+        }
+    }
+}
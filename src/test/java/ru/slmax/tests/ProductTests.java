@@ -6,33 +6,53 @@ import org.hamcrest.Matchers;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.ResourceAccessMode;
+import org.junit.jupiter.api.parallel.ResourceLock;
 import retrofit2.Response;
 import retrofit2.Retrofit;
 import ru.slmax.db.dao.CategoriesMapper;
+import ru.slmax.db.dao.ProductsMapper;
 import ru.slmax.db.model.Categories;
 import ru.slmax.db.model.Products;
 import ru.slmax.dto.Product;
 import ru.slmax.enums.CategoryType;
+import ru.slmax.extensions.ApiTest;
+import ru.slmax.extensions.SharedResources;
+import ru.slmax.extensions.TestData;
+import ru.slmax.reconcile.ReconciliationReport;
 import ru.slmax.service.CategoryService;
+import ru.slmax.service.ProductAsyncService;
 import ru.slmax.service.ProductService;
+import ru.slmax.utils.AsyncUtils;
 import ru.slmax.utils.DbUtils;
+import ru.slmax.utils.IdSet;
+import ru.slmax.utils.JsonStreamUtils;
 import ru.slmax.utils.PrettyLogger;
 import ru.slmax.utils.RetrofitUtils;
-import ru.slmax.db.dao.ProductsMapper;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.notNullValue;
 
+/**
+ * Every test works on its own products (see {@link TestData}) and counts only them,
+ * so other runs can share the database and the tests run in parallel (see junit-platform.properties).
+ */
+@ApiTest
+@ResourceLock(value = SharedResources.HTTP_METRICS, mode = ResourceAccessMode.READ)
+@ResourceLock(value = SharedResources.SECOND_LEVEL_CACHE, mode = ResourceAccessMode.READ)
 public class ProductTests {
     Integer id;
+    TestData testData;
     static ProductsMapper productsMapper;
     static CategoriesMapper categoriesMapper;
     static Retrofit client;
     static ProductService productService;
+    static ProductAsyncService productAsyncService;
     static CategoryService categoryService;
     Product product;
     Faker faker = new Faker();
@@ -42,24 +62,26 @@ public class ProductTests {
     static void beforeAll() {
         client = RetrofitUtils.getRetrofit();
         productService = client.create(ProductService.class);
+        productAsyncService = client.create(ProductAsyncService.class);
         categoryService = client.create(CategoryService.class);
         productsMapper = DbUtils.getProductMapper();
         categoriesMapper = DbUtils.getCategoriesMapper();
     }
 
     @BeforeEach
-    void setUp() {
+    void setUp(TestData testData) {
+        this.testData = testData;
         product = new Product()
-                .withTitle(faker.food().dish())
+                .withTitle(testData.title(faker.food().dish()))
                 .withCategoryTitle(CategoryType.FOOD.getTitle())
                 .withPrice((int) ((Math.random() + 1) * 100));
     }
 
     @Test
     void createProductTest() throws IOException {
-        Integer countProductsBefore = DbUtils.countProducts(productsMapper);
+        Integer countProductsBefore = testData.countProducts();
         Response<Product> response = productService.createProduct(product).execute();
-        Integer countProductsAfter = DbUtils.countProducts(productsMapper);
+        Integer countProductsAfter = testData.countProducts();
         assertThat(countProductsAfter, equalTo(countProductsBefore+1));
         assertThat(response.code(), equalTo(201));
         assertThat(response.body().getTitle(), equalTo(product.getTitle()));
@@ -68,12 +90,34 @@ public class ProductTests {
         prettyLogger.log(response.body().toString());
     }
 
+    @Test
+    void createProductsConcurrentlyTest() {
+        int count = 10;
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            products.add(product.withTitle(testData.title(faker.food().dish())));
+        }
+        Integer countProductsBefore = testData.countProducts();
+        List<Response<Product>> responses = AsyncUtils.createProducts(productAsyncService, products).join();
+        Integer countProductsAfter = testData.countProducts();
+        assertThat(countProductsAfter, equalTo(countProductsBefore + count));
+        List<Integer> ids = new ArrayList<>();
+        for (Response<Product> response : responses) {
+            assertThat(response.code(), equalTo(201));
+            ids.add(response.body().getId());
+        }
+        for (Response<ResponseBody> response : AsyncUtils.deleteProducts(productAsyncService, ids).join()) {
+            assertThat(response.code(), equalTo(200));
+        }
+        assertThat(testData.countProducts(), equalTo(countProductsBefore));
+    }
+
     @Test
     void createProductWithIdTest() throws IOException {
         product.setId(13239);
-        Integer countProductsBefore = DbUtils.countProducts(productsMapper);
+        Integer countProductsBefore = testData.countProducts();
         Response<Product> response = productService.createProduct(product).execute();
-        Integer countProductsAfter = DbUtils.countProducts(productsMapper);
+        Integer countProductsAfter = testData.countProducts();
         assertThat(response.code(), equalTo(400));
         assertThat(countProductsAfter, equalTo(countProductsBefore));
     }
@@ -82,33 +126,23 @@ public class ProductTests {
     void createProductWithNullFieldTest() throws IOException {
         product.setPrice(null);
         product.setTitle(null);
-        Integer countProductsBefore = DbUtils.countProducts(productsMapper);
+        // a product created by mistake would have no title and so no test prefix: this counts every
+        // untitled row in the table, a global guard that a concurrent test or run creating one could break
+        Integer countProductsBefore = DbUtils.countProducts(productsMapper, criteria -> criteria.andTitleIsNull());
         Response<Product> response = productService.createProduct(product).execute();
-        Integer countProductsAfter = DbUtils.countProducts(productsMapper);
+        Integer countProductsAfter = DbUtils.countProducts(productsMapper, criteria -> criteria.andTitleIsNull());
         assertThat(response.code(), equalTo(400));
         assertThat(countProductsAfter, equalTo(countProductsBefore));
     }
 
     @Test
     void createProductWithNonexistentCategoryTest() throws IOException {
-        List<Categories> allCategories = DbUtils.selectAllCategory(categoriesMapper);
-        String newTitle = allCategories.get(0).getTitle() + "o";
-        boolean check = true;
-        while(check) {
-            check = false;
-            for (Categories i : allCategories) { // проверка, что категории не существует
-                if (newTitle.equals(i.getTitle())) {
-                    check = true;
-                    newTitle += "o";
-                    break;
-                }
-            }
-        }
+        String newTitle = DbUtils.findUnusedCategoryTitle(categoriesMapper, CategoryType.FOOD.getTitle());
         product.setCategoryTitle(newTitle);
 
-        Integer countProductsBefore = DbUtils.countProducts(productsMapper);
+        Integer countProductsBefore = testData.countProducts();
         Response<Product> response = productService.createProduct(product).execute();
-        Integer countProductsAfter = DbUtils.countProducts(productsMapper);
+        Integer countProductsAfter = testData.countProducts();
         assertThat(response.code(), equalTo(400));
         assertThat(countProductsAfter, equalTo(countProductsBefore));
     }
@@ -134,9 +168,9 @@ public class ProductTests {
         Response<Product> response = productService.createProduct(product).execute();
         assert response.body() != null;
         id = response.body().getId();
-        Integer countProductsBefore = DbUtils.countProducts(productsMapper);
+        Integer countProductsBefore = testData.countProducts();
         DbUtils.deleteProductById(productsMapper, id);
-        Integer countProductsAfter = DbUtils.countProducts(productsMapper);
+        Integer countProductsAfter = testData.countProducts();
         response = productService
                 .getProduct(id)
                 .execute();
@@ -146,34 +180,60 @@ public class ProductTests {
 
     @Test
     void getProductByNonexistentIdTest() throws IOException {
-        List<Products> allProducts = DbUtils.selectAllProducts(productsMapper);
-        boolean check = true;
-        int nonId;
-        while(check) {
-            check = false;
-            nonId = (int)((Math.random() * 90000) + 10000);
-            for (Products i : allProducts) { // проверка, что такого id не существует
-                if (i.getId().equals(Long.valueOf(nonId))) {
-                    check = true;
-                    break;
-                }
-            }
+        IdSet ids = DbUtils.selectProductIds();
+        long[] sorted = ids.toArray();
+        // a hole left by a deleted row: the id sequence never hands it out again, unlike max(id) + 1
+        long free = ids.nextAbsent(1);
+        if (sorted.length == 0 || free > sorted[sorted.length - 1]) {
+            free = DbUtils.findUnusedProductId(productsMapper);
         }
+        Integer nonId = Math.toIntExact(free);
         Response<Product> response = productService
-                .getProduct(-1)
+                .getProduct(nonId)
                 .execute();
         assertThat(response.code(), equalTo(404));
     }
 
     @Test
     void getAllProductsTest() {
-        List<Products> allProducts = DbUtils.selectAllProducts(productsMapper);
-        for (Products i : allProducts) {
+        DbUtils.scanAllProducts(i -> {
             assertThat(i.getId().toString(), Matchers.matchesPattern("^[0-9]{1,5}"));
             assertThat(i.getTitle(), Matchers.is(notNullValue()));
             assertThat(i.getPrice(), Matchers.is(notNullValue()));
             assertThat(i.getCategory_id(), Matchers.is(notNullValue()));
+        });
+    }
+
+    @Test
+    void getProductsStreamTest() throws IOException {
+        IdSet dbBefore = DbUtils.selectProductIds();
+        Response<ResponseBody> response = productService.getProductsStream().execute();
+        assertThat(response.code(), equalTo(200));
+        IdSet ids = new IdSet();
+        long count = JsonStreamUtils.forEachProduct(response.body(), i -> {
+            assertThat(i.getId(), Matchers.is(notNullValue()));
+            assertThat(i.getTitle(), Matchers.is(notNullValue()));
+            assertThat(i.getPrice(), Matchers.is(notNullValue()));
+            assertThat(i.getCategoryTitle(), Matchers.is(notNullValue()));
+            assertThat("duplicate id " + i.getId(), ids.add(i.getId()), equalTo(true));
+        });
+        assertThat(count, Matchers.greaterThan(0L));
+        // rows in the table before and after the stream must all be in it; other tests may add and delete meanwhile
+        IdSet missing = dbBefore.and(DbUtils.selectProductIds()).andNot(ids);
+        assertThat("ids missing in the API: " + missing, missing.isEmpty(), equalTo(true));
+    }
+
+    @Test
+    void productsMatchDatabaseTest() throws IOException {
+        int count = 3;
+        for (int i = 0; i < count; i++) {
+            assertThat(productService.createProduct(product.withTitle(testData.title(faker.food().dish()))).execute().code(), equalTo(201));
         }
+        Response<ResponseBody> response = productService.getProductsStream().execute();
+        assertThat(response.code(), equalTo(200));
+        ReconciliationReport report = testData.reconcile(response.body());
+        assertThat(report.toString(), report.isConsistent(), equalTo(true));
+        assertThat(report.getMatched(), equalTo((long) count));
     }
 
     @Test
@@ -185,14 +245,14 @@ public class ProductTests {
         id = response.body().getId();
         Products productDB = new Products();
         Integer price = 1500;
-        String title = "New title";
+        String title = testData.title("New title");
         productDB.setId(Long.valueOf(id));
         productDB.setPrice(price);
         productDB.setTitle(title);
-        productDB.setCategory_id(Long.valueOf(CategoryType.FURNITURE.getId()));
-        Integer countProductsBefore = DbUtils.countProducts(productsMapper);
+        productDB.setCategory_id(Long.valueOf(DbUtils.getCategoryCache().of(CategoryType.FURNITURE).getId()));
+        Integer countProductsBefore = testData.countProducts();
         DbUtils.updateProductById(productsMapper, productDB);
-        Integer countProductsAfter = DbUtils.countProducts(productsMapper);
+        Integer countProductsAfter = testData.countProducts();
         Response<Product> responseUpd = productService
                 .getProduct(id)
                 .execute();
@@ -211,7 +271,7 @@ public class ProductTests {
         assert response.body() != null;
         id = response.body().getId();
         Integer price = 1500;
-        String title = "New title";
+        String title = testData.title("New title");
         String category = "Furniture";
         product.setPrice(price);
         product.setTitle(title);
@@ -256,7 +316,7 @@ public class ProductTests {
         id = response.body().getId();
         DbUtils.deleteProductById(productsMapper, id);
         Integer price = 1500;
-        String title = "New title";
+        String title = testData.title("New title");
         String category = "Furniture";
         product.setId(id);
         product.setPrice(price);
@@ -276,9 +336,9 @@ public class ProductTests {
         Response<Product> response = productService.createProduct(product).execute();
         assert response.body() != null;
         id = response.body().getId();
-        Integer countProductsBefore = DbUtils.countProducts(productsMapper);
+        Integer countProductsBefore = testData.countProducts();
         DbUtils.deleteProductById(productsMapper, id);
-        Integer countProductsAfter = DbUtils.countProducts(productsMapper);
+        Integer countProductsAfter = testData.countProducts();
         assertThat(countProductsAfter, equalTo(countProductsBefore - 1));
     }
 
@@ -287,13 +347,13 @@ public class ProductTests {
         Response<Product> response = productService.createProduct(product).execute();
         assert response.body() != null;
         id = response.body().getId();
-        Integer countProductsBefore = DbUtils.countProducts(productsMapper);
+        Integer countProductsBefore = testData.countProducts();
         DbUtils.deleteProductById(productsMapper, id);
-        Integer countProductsAfter = DbUtils.countProducts(productsMapper);
+        Integer countProductsAfter = testData.countProducts();
         Response<ResponseBody> responseDel = productService
                 .deleteProduct(id)
                 .execute();
-        Integer countProductsLast = DbUtils.countProducts(productsMapper);
+        Integer countProductsLast = testData.countProducts();
         assertThat(responseDel.code(), equalTo(404));
         assertThat(countProductsBefore, equalTo(countProductsAfter+1));
         assertThat(countProductsAfter, equalTo(countProductsLast));
@@ -306,4 +366,13 @@ public class ProductTests {
         assertThat(categories.getTitle(), equalTo(CategoryType.FOOD.getTitle()));
         assertThat(categories.getId(), equalTo(idCategory));
     }
+
+    @Test
+    void categoryTypeMatchesCategoriesTest() {
+        DbUtils.getCategoryCache().refresh();
+        DbUtils.getCategoryCache().validate();
+        for (CategoryType type : CategoryType.values()) {
+            assertThat(DbUtils.getCategoryCache().byId(type.getId()).getTitle(), equalTo(type.getTitle()));
+        }
+    }
 }
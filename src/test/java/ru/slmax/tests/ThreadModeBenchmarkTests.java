@@ -0,0 +1,89 @@
+package ru.slmax.tests;
+
+import com.github.javafaker.Faker;
+import io.qameta.allure.Allure;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Isolated;
+import retrofit2.Response;
+import ru.slmax.dto.Product;
+import ru.slmax.enums.CategoryType;
+import ru.slmax.service.ProductService;
+import ru.slmax.utils.ConfigUtils;
+import ru.slmax.utils.ExecutorUtils;
+import ru.slmax.utils.RetrofitUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Runs the same create → get → delete scenario on a platform thread pool and on virtual threads
+ * and attaches the throughput of both to the Allure report. Excluded from the default run, see the
+ * "benchmark" profile; isolated, so no other test competes for the threads while it measures.
+ */
+@Tag("benchmark")
+@Isolated
+public class ThreadModeBenchmarkTests {
+    static final int scenarios = ConfigUtils.getInt("benchmark.scenarios", 1000);
+    static final int platformThreads = ConfigUtils.getInt("benchmark.platformThreads", 50);
+    static ProductService productService;
+    Faker faker = new Faker();
+
+    @BeforeAll
+    static void beforeAll() {
+        productService = RetrofitUtils.getRetrofit().create(ProductService.class);
+    }
+
+    @Test
+    void platformVsVirtualThreadsTest() throws Exception {
+        double platform = run(Executors.newFixedThreadPool(platformThreads));
+        StringBuilder report = new StringBuilder(String.format("%d scenarios%nplatform threads (%d): %.1f scenarios/s%n",
+                scenarios, platformThreads, platform));
+        if (ExecutorUtils.isVirtualThreadsSupported()) {
+            double virtual = run(ExecutorUtils.newVirtualThreadPerTaskExecutor());
+            report.append(String.format("virtual threads: %.1f scenarios/s (x%.2f)%n", virtual, virtual / platform));
+        } else {
+            report.append("virtual threads: not supported on Java ").append(System.getProperty("java.version"));
+        }
+        Allure.addAttachment("Thread mode throughput", "text/plain", report.toString(), ".txt");
+    }
+
+    private double run(ExecutorService executor) throws Exception {
+        List<Future<Boolean>> results = new ArrayList<>(scenarios);
+        long start = System.nanoTime();
+        for (int i = 0; i < scenarios; i++) {
+            results.add(executor.submit(this::scenario));
+        }
+        int succeeded = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get()) succeeded++;
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        assertThat(succeeded, equalTo(scenarios));
+        return scenarios / (elapsed / 1e9);
+    }
+
+    private boolean scenario() throws Exception {
+        Product product = new Product()
+                .withTitle(faker.food().dish())
+                .withCategoryTitle(CategoryType.FOOD.getTitle())
+                .withPrice((int) ((Math.random() + 1) * 100));
+        Response<Product> created = productService.createProduct(product).execute();
+        if (created.code() != 201 || created.body() == null) return false;
+        Integer id = created.body().getId();
+        Response<Product> fetched = productService.getProduct(id).execute();
+        Response<ResponseBody> deleted = productService.deleteProduct(id).execute();
+        return fetched.code() == 200 && deleted.code() == 200;
+    }
+}